@@ -1,22 +1,269 @@
 package com.weatherapp.myweatherapp.config;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.context.ContextSnapshot;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+
+import org.apache.hc.client5.http.impl.DefaultConnectionKeepAliveStrategy;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.io.SocketConfig;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import io.netty.channel.ChannelOption;
+import reactor.netty.resources.ConnectionProvider;
 
 /**
  * Configuration class responsible for holding configuration settings and bean definitions.
  */
 @Configuration
+@EnableScheduling
 public class AppConfig {
 
     /**
      * Creates a RestTemplate bean that is used in the Repositry layer for making HTTP requests to the Visual Crossing API.
      * 
+     * Responses are read with the streaming CityInfoHttpMessageConverter, which skips the parts of the timeline the application does not use.
+     * The read timeout is the socket timeout of the pooled httpClient.
+     * Every request is observed, so it is timed as `http.client.requests` and traced as a child span of the current request.
+     * 
+     * @param httpClient The pooled HTTP client that sends the requests.
+     * @param objectMapper The JSON mapper configured by Spring Boot.
+     * @param meterRegistry Records the size of the responses.
+     * @param observationRegistry Times and traces the requests and the deserialization of the responses.
+     * @param connectTimeoutMs The maximum time to establish a connection.
+     * @param connectionRequestTimeoutMs The maximum time to wait for a free connection from the pool.
      * @return A configured instance for RestTemplate
      */
     @Bean  
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestTemplate restTemplate(CloseableHttpClient httpClient, ObjectMapper objectMapper, MeterRegistry meterRegistry, ObservationRegistry observationRegistry, @Value("${weather.http.connect-timeout-ms}") int connectTimeoutMs, @Value("${weather.http.connection-request-timeout-ms}") int connectionRequestTimeoutMs) {
+        HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory(httpClient);
+        requestFactory.setConnectTimeout(connectTimeoutMs);
+        requestFactory.setConnectionRequestTimeout(connectionRequestTimeoutMs);
+
+        RestTemplate restTemplate = new RestTemplate(requestFactory);
+        restTemplate.getMessageConverters().add(0, new CityInfoHttpMessageConverter(objectMapper, meterRegistry, observationRegistry));
+        restTemplate.setObservationRegistry(observationRegistry);
+
+        return restTemplate;
+    }
+
+    /**
+     * Creates the MVC configuration that writes CityInfo responses from the CityInfoPayloadCache.
+     * The converter is placed ahead of the Jackson converter, so a cached forecast is not serialized and compressed again on every request.
+     * 
+     * @param payloadCache Holds the serialized and compressed response bodies.
+     * @param objectMapper The JSON mapper configured by Spring Boot.
+     * @param meterRegistry Records the size of the response bodies.
+     * @return A WebMvcConfigurer registering the CityInfoPayloadConverter.
+     */
+    @Bean
+    public WebMvcConfigurer cityInfoPayloadConfigurer(CityInfoPayloadCache payloadCache, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        return new WebMvcConfigurer() {
+            @Override
+            public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+                converters.add(0, new CityInfoPayloadConverter(payloadCache, objectMapper, meterRegistry));
+            }
+        };
+    }
+
+    /**
+     * Creates the pooled HTTP client used to call the Visual Crossing API.
+     * Connections are kept alive and reused between requests so that most calls skip the TCP and TLS handshakes, and responses are requested gzip compressed.
+     * 
+     * @param maxConnections The maximum number of pooled connections.
+     * @param maxConnectionsPerRoute The maximum number of pooled connections to a single host.
+     * @param keepAliveSeconds The maximum time an idle connection is kept for reuse, shortened when the server asks for less.
+     * @param readTimeoutMs The socket timeout, so a hung connection cannot block a thread forever.
+     * @param compression Whether to request compressed responses and decompress them transparently.
+     * @return A configured instance of CloseableHttpClient.
+     */
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient httpClient(@Value("${weather.http.max-connections}") int maxConnections, @Value("${weather.http.max-connections-per-route}") int maxConnectionsPerRoute, @Value("${weather.http.keep-alive-seconds}") long keepAliveSeconds, @Value("${weather.http.read-timeout-ms}") int readTimeoutMs, @Value("${weather.http.compression}") boolean compression) {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+            .setMaxConnTotal(maxConnections)
+            .setMaxConnPerRoute(maxConnectionsPerRoute)
+            .setDefaultSocketConfig(SocketConfig.custom().setSoTimeout(Timeout.ofMilliseconds(readTimeoutMs)).setTcpNoDelay(true).build())
+            .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+            .build();
+
+        TimeValue maxKeepAlive = TimeValue.ofSeconds(keepAliveSeconds);
+        HttpClientBuilder builder = HttpClientBuilder.create()
+            .setConnectionManager(connectionManager)
+            .setKeepAliveStrategy((response, context) -> {
+                TimeValue requested = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                return requested.compareTo(maxKeepAlive) < 0 ? requested : maxKeepAlive;
+            })
+            .evictExpiredConnections()
+            .evictIdleConnections(maxKeepAlive);
+
+        if (!compression) {
+            builder.disableContentCompression();
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Creates a non-blocking WebClient bean that is used in the Repositry layer when the reactive endpoints are enabled.
+     * It shares the pool size, keep-alive, timeout and compression settings of the blocking HTTP client, and reads responses with the streaming CityInfoDecoder.
+     * 
+     * @param builder The WebClient builder configured by Spring Boot.
+     * @param objectMapper The JSON mapper configured by Spring Boot.
+     * @param meterRegistry Records the size of the responses.
+     * @param observationRegistry Times and traces the deserialization of the responses.
+     * @param maxConnections The maximum number of pooled connections.
+     * @param keepAliveSeconds The maximum time an idle connection is kept for reuse.
+     * @param connectTimeoutMs The maximum time to establish a connection.
+     * @param connectionRequestTimeoutMs The maximum time to wait for a free connection from the pool.
+     * @param readTimeoutMs The maximum time to wait for the response.
+     * @param compression Whether to request compressed responses and decompress them transparently.
+     * @param maxResponseBytes The largest response body that may be buffered for deserialization.
+     * @return A configured instance of WebClient.
+     */
+    @Bean
+    public WebClient webClient(WebClient.Builder builder, ObjectMapper objectMapper, MeterRegistry meterRegistry, ObservationRegistry observationRegistry, @Value("${weather.http.max-connections}") int maxConnections, @Value("${weather.http.keep-alive-seconds}") long keepAliveSeconds, @Value("${weather.http.connect-timeout-ms}") int connectTimeoutMs, @Value("${weather.http.connection-request-timeout-ms}") long connectionRequestTimeoutMs, @Value("${weather.http.read-timeout-ms}") long readTimeoutMs, @Value("${weather.http.compression}") boolean compression, @Value("${weather.http.max-response-bytes}") int maxResponseBytes) {
+        ConnectionProvider connectionProvider = ConnectionProvider.builder("visualcrossing")
+            .maxConnections(maxConnections)
+            .pendingAcquireTimeout(Duration.ofMillis(connectionRequestTimeoutMs))
+            .maxIdleTime(Duration.ofSeconds(keepAliveSeconds))
+            .build();
+
+        reactor.netty.http.client.HttpClient httpClient = reactor.netty.http.client.HttpClient.create(connectionProvider)
+            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs)
+            .responseTimeout(Duration.ofMillis(readTimeoutMs))
+            .compress(compression);
+
+        return builder
+            .clientConnector(new ReactorClientHttpConnector(httpClient))
+            .codecs(codecs -> {
+                codecs.defaultCodecs().maxInMemorySize(maxResponseBytes);
+                codecs.customCodecs().registerWithDefaultConfig(new CityInfoDecoder(objectMapper, meterRegistry, observationRegistry));
+            })
+            .build();
+    }
+
+    /**
+     * Creates the bounded executor used by the Service layer to fetch several cities from Visual Crossing in parallel.
+     * When the pool and its queue are both full new fetches are rejected with a RejectedExecutionException, which the service answers with 503, rather than run on the request thread outside the fetch timeout.
+     * On virtual threads every fetch gets its own thread, and only the number of fetches in progress is bounded.
+     * Every task runs with the context of the thread that submitted it, so the fetches of a fan-out are traced as children of the request span.
+     *
+     * @param poolSize The maximum number of concurrent upstream fetches on platform threads.
+     * @param queueCapacity The number of fetches that may wait for a free platform thread.
+     * @param virtualThreads Whether to run the fetches on virtual threads when the runtime supports them.
+     * @param virtualMaxConcurrent The maximum number of concurrent upstream fetches on virtual threads.
+     * @return A configured ExecutorService for upstream fetches.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService fetchExecutor(@Value("${weather.fetch.pool-size}") int poolSize, @Value("${weather.fetch.queue-capacity}") int queueCapacity, @Value("${weather.fetch.virtual-threads}") boolean virtualThreads, @Value("${weather.fetch.virtual-max-concurrent}") int virtualMaxConcurrent) {
+        ExecutorService virtualExecutor = virtualThreads ? virtualThreadPerTaskExecutor() : null;
+
+        if (virtualExecutor != null) {
+            return new BoundedExecutorService(virtualExecutor, virtualMaxConcurrent) {
+                @Override
+                public void execute(Runnable command) {
+                    super.execute(ContextSnapshot.captureAll().wrap(command));
+                }
+            };
+        }
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity), platformThreadFactory("weather-fetch-"), new ThreadPoolExecutor.AbortPolicy()) {
+            @Override
+            public void execute(Runnable command) {
+                super.execute(ContextSnapshot.captureAll().wrap(command));
+            }
+        };
+        executor.allowCoreThreadTimeOut(true);
+
+        return executor;
+    }
+
+    /**
+     * Creates the small executor running the background refreshes of stale and hot cache entries, apart from the fetch executor serving requests.
+     * A refresh submitted while its threads and queue are full is rejected and skipped, so it never runs on the request thread that found the entry stale nor takes a thread from the fetches of a request.
+     *
+     * @param refreshConcurrency The maximum number of background refreshes running at the same time.
+     * @return A configured ExecutorService for background refreshes.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService refreshExecutor(@Value("${weather.refresh.concurrency}") int refreshConcurrency) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(refreshConcurrency, refreshConcurrency, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(refreshConcurrency), platformThreadFactory("weather-refresh-"), new ThreadPoolExecutor.AbortPolicy()) {
+            @Override
+            public void execute(Runnable command) {
+                super.execute(ContextSnapshot.captureAll().wrap(command));
+            }
+        };
+        executor.allowCoreThreadTimeOut(true);
+
+        return executor;
+    }
+
+    /**
+     * Looks up the virtual thread per task executor reflectively so the application still compiles and runs on Java 17.
+     *
+     * @return An executor starting a new virtual thread for every task, or null if the runtime does not support them.
+     */
+    static ExecutorService virtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Looks up the virtual thread factory reflectively so the application still compiles and runs on Java 17.
+     *
+     * @return A factory creating virtual threads, or null if the runtime does not support them.
+     */
+    static ThreadFactory virtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Creates a factory for named daemon platform threads.
+     *
+     * @param prefix The prefix of each thread name.
+     * @return A factory creating platform threads.
+     */
+    static ThreadFactory platformThreadFactory(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
     }
 }
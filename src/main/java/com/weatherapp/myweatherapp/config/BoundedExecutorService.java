@@ -0,0 +1,94 @@
+package com.weatherapp.myweatherapp.config;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executor passing every task to another executor while a semaphore bounds how many of them run at the same time.
+ * A task submitted while every permit is taken is rejected with a RejectedExecutionException, like a full ThreadPoolExecutor rejects it, instead of waiting.
+ * It bounds a thread per task executor, which would otherwise start any number of threads.
+ */
+class BoundedExecutorService extends AbstractExecutorService {
+    private final ExecutorService delegate;
+    private final Semaphore permits;
+    private final int maxConcurrent;
+
+    /**
+     * Creates a BoundedExecutorService instance.
+     *
+     * @param delegate Runs the tasks.
+     * @param maxConcurrent The maximum number of tasks running at the same time.
+     */
+    BoundedExecutorService(ExecutorService delegate, int maxConcurrent) {
+        this.delegate = delegate;
+        this.permits = new Semaphore(maxConcurrent);
+        this.maxConcurrent = maxConcurrent;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (!permits.tryAcquire()) {
+            throw new RejectedExecutionException("All " + maxConcurrent + " tasks are already running");
+        }
+
+        try {
+            delegate.execute(() -> {
+                try {
+                    command.run();
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Accesses the number of tasks currently running.
+     *
+     * @return The number of taken permits.
+     */
+    int activeCount() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    /**
+     * Accesses the maximum number of tasks running at the same time.
+     *
+     * @return The number of permits.
+     */
+    int maxConcurrent() {
+        return maxConcurrent;
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+}
@@ -0,0 +1,75 @@
+package com.weatherapp.myweatherapp.config;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.weatherapp.myweatherapp.model.CityInfo;
+import com.weatherapp.myweatherapp.model.CityInfoReader;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.AbstractDataBufferDecoder;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.MediaType;
+import org.springframework.util.MimeType;
+
+import reactor.core.publisher.Flux;
+
+/**
+ * Decoder that lets WebClient read Visual Crossing responses with the streaming CityInfoReader.
+ * The body chunks are joined once and parsed directly, instead of being tokenized into an intermediate buffer first.
+ * The size of each body and the time taken to parse it are recorded, the parsing also as a span, with the tag `client=reactive`.
+ */
+public class CityInfoDecoder extends AbstractDataBufferDecoder<CityInfo> {
+    private final ObjectMapper objectMapper;
+    private final DistributionSummary payloadSize;
+    private final ObservationRegistry observationRegistry;
+
+    /**
+     * Creates a CityInfoDecoder instance.
+     * 
+     * @param objectMapper Provides the parser factory and binds the current conditions.
+     * @param meterRegistry Records the payload size.
+     * @param observationRegistry Times and traces the deserialization.
+     */
+    public CityInfoDecoder(ObjectMapper objectMapper, MeterRegistry meterRegistry, ObservationRegistry observationRegistry) {
+        super(MediaType.APPLICATION_JSON, new MediaType("application", "*+json"));
+        this.objectMapper = objectMapper;
+        this.payloadSize = WeatherMetrics.upstreamPayloadSize(meterRegistry, "reactive");
+        this.observationRegistry = observationRegistry;
+    }
+
+    @Override
+    public boolean canDecode(ResolvableType elementType, MimeType mimeType) {
+        return CityInfo.class == elementType.toClass() && super.canDecode(elementType, mimeType);
+    }
+
+    @Override
+    public Flux<CityInfo> decode(Publisher<DataBuffer> input, ResolvableType elementType, MimeType mimeType, Map<String, Object> hints) {
+        return Flux.from(decodeToMono(input, elementType, mimeType, hints));
+    }
+
+    @Override
+    public CityInfo decode(DataBuffer buffer, ResolvableType targetType, MimeType mimeType, Map<String, Object> hints) {
+        payloadSize.record(buffer.readableByteCount());
+        Observation observation = WeatherMetrics.deserialization(observationRegistry, "reactive").start();
+
+        try (InputStream body = buffer.asInputStream(true); JsonParser parser = objectMapper.createParser(body)) {
+            return CityInfoReader.read(parser);
+        } catch (IOException e) {
+            observation.error(e);
+            throw new DecodingException("Could not read weather data: " + e.getMessage(), e);
+        } finally {
+            observation.stop();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.weatherapp.myweatherapp.config;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.weatherapp.myweatherapp.model.CityInfo;
+import com.weatherapp.myweatherapp.model.CityInfoReader;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+/**
+ * Message converter that lets RestTemplate read Visual Crossing responses with the streaming CityInfoReader.
+ * The body is parsed straight off the response stream and unused subtrees are skipped instead of being bound.
+ * The size of each body and the time taken to read and parse it are recorded, the parsing also as a span, with the tag `client=blocking`.
+ */
+public class CityInfoHttpMessageConverter extends AbstractHttpMessageConverter<CityInfo> {
+    private final ObjectMapper objectMapper;
+    private final DistributionSummary payloadSize;
+    private final ObservationRegistry observationRegistry;
+
+    /**
+     * Creates a CityInfoHttpMessageConverter instance.
+     * 
+     * @param objectMapper Provides the parser factory and binds the current conditions.
+     * @param meterRegistry Records the payload size.
+     * @param observationRegistry Times and traces the deserialization.
+     */
+    public CityInfoHttpMessageConverter(ObjectMapper objectMapper, MeterRegistry meterRegistry, ObservationRegistry observationRegistry) {
+        super(MediaType.APPLICATION_JSON, new MediaType("application", "*+json"));
+        this.objectMapper = objectMapper;
+        this.payloadSize = WeatherMetrics.upstreamPayloadSize(meterRegistry, "blocking");
+        this.observationRegistry = observationRegistry;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return CityInfo.class == clazz;
+    }
+
+    @Override
+    protected boolean canWrite(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected CityInfo readInternal(Class<? extends CityInfo> clazz, HttpInputMessage inputMessage) throws IOException {
+        CountingInputStream body = new CountingInputStream(inputMessage.getBody());
+        Observation observation = WeatherMetrics.deserialization(observationRegistry, "blocking").start();
+
+        try (JsonParser parser = objectMapper.createParser(body)) {
+            return CityInfoReader.read(parser);
+        } catch (IOException e) {
+            observation.error(e);
+            throw new HttpMessageNotReadableException("Could not read weather data: " + e.getMessage(), e, inputMessage);
+        } finally {
+            observation.stop();
+            payloadSize.record(body.count);
+        }
+    }
+
+    @Override
+    protected void writeInternal(CityInfo ci, HttpOutputMessage outputMessage) {
+        throw new UnsupportedOperationException("CityInfoHttpMessageConverter only reads weather data");
+    }
+
+    /**
+     * Counts the bytes read from the response body, after any content encoding was removed.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
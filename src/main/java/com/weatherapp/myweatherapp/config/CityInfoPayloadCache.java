@@ -0,0 +1,112 @@
+package com.weatherapp.myweatherapp.config;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.weatherapp.myweatherapp.model.CityInfo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Cache of the serialized and gzip compressed response bodies of CityInfo objects.
+ * A cached CityInfo is never modified once it was fetched, so its bytes are computed on the first response and every repeat response is a plain byte copy.
+ * Entries are keyed by identity and held weakly, so a refreshed forecast gets new bytes and the old ones go away with the old object.
+ */
+@Component
+public class CityInfoPayloadCache {
+    private final ObjectMapper objectMapper;
+    private final boolean compression;
+    private final long minCompressBytes;
+    private final Cache<CityInfo, Payload> payloads;
+
+    /**
+     * Creates a CityInfoPayloadCache instance.
+     *
+     * @param objectMapper The JSON mapper the responses are serialized with.
+     * @param compression specifies whether a gzip compressed copy of the body is kept.
+     * @param minCompressSize The smallest body that is compressed, smaller bodies are always sent as they are.
+     * @param maxEntries The maximum number of cached forecasts, which bounds the cached bodies as well.
+     */
+    public CityInfoPayloadCache(ObjectMapper objectMapper, @Value("${server.compression.enabled}") boolean compression, @Value("${server.compression.min-response-size}") DataSize minCompressSize, @Value("${weather.cache.max-entries}") long maxEntries) {
+        this.objectMapper = objectMapper;
+        this.compression = compression;
+        this.minCompressBytes = minCompressSize.toBytes();
+        this.payloads = Caffeine.newBuilder().weakKeys().maximumSize(maxEntries).build();
+    }
+
+    /**
+     * Looks up the response body of the weather data, serializing and compressing it only the first time it is asked for.
+     *
+     * @param ci The weather data.
+     * @return The Payload of the CityInfo object, or null if it cannot be serialized.
+     */
+    public Payload get(CityInfo ci) {
+        return payloads.get(ci, this::serialize);
+    }
+
+    /**
+     * Checks how many bodies are currently cached.
+     *
+     * @return The approximate number of cached payloads.
+     */
+    public long size() {
+        return payloads.estimatedSize();
+    }
+
+    private Payload serialize(CityInfo ci) {
+        byte[] json;
+
+        try {
+            json = objectMapper.writeValueAsBytes(ci);
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+
+        byte[] gzip = compression && json.length >= minCompressBytes ? gzip(json) : null;
+        String hash = DigestUtils.md5DigestAsHex(json);
+
+        return new Payload(json, gzip, "\"" + hash + "\"", gzip == null ? null : "\"" + hash + "-gz\"");
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 4);
+
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return compressed.toByteArray();
+    }
+
+    /**
+     * The response body of one CityInfo object.
+     * Each encoding is a different representation, so the compressed body has its own strong ETag, the hash of the JSON suffixed with `-gz`.
+     *
+     * @param json The serialized JSON.
+     * @param gzip The gzip compressed JSON, or null if compression is disabled or the JSON is below the threshold.
+     * @param etag The quoted strong ETag of the JSON, a hash of it.
+     * @param gzipEtag The quoted strong ETag of the compressed JSON, or null without one.
+     */
+    public record Payload(byte[] json, byte[] gzip, String etag, String gzipEtag) {
+        /**
+         * Accesses the ETag of the body sent to a client.
+         *
+         * @param acceptsGzip specifies whether the client accepts gzip.
+         * @return The ETag of the compressed body if it exists and the client accepts it, or the ETag of the JSON.
+         */
+        public String etag(boolean acceptsGzip) {
+            return acceptsGzip && gzip != null ? gzipEtag : etag;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.weatherapp.myweatherapp.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.weatherapp.myweatherapp.model.CityInfo;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.io.IOException;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * Message converter that writes CityInfo response bodies from the CityInfoPayloadCache.
+ * Clients accepting gzip get the pre-compressed bytes with `Content-Encoding: gzip`, so the container does not compress the body again.
+ * The ETag header is set to the one of the encoding actually written.
+ * The size of every body written is recorded per content encoding.
+ */
+public class CityInfoPayloadConverter extends AbstractHttpMessageConverter<CityInfo> {
+    private final CityInfoPayloadCache payloadCache;
+    private final ObjectMapper objectMapper;
+    private final DistributionSummary identitySize;
+    private final DistributionSummary gzipSize;
+
+    /**
+     * Creates a CityInfoPayloadConverter instance.
+     *
+     * @param payloadCache Holds the serialized and compressed bodies.
+     * @param objectMapper Serializes the weather data the cache could not, so the error is reported as it would be without the cache.
+     * @param meterRegistry Records the size of the bodies written.
+     */
+    public CityInfoPayloadConverter(CityInfoPayloadCache payloadCache, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        super(MediaType.APPLICATION_JSON, new MediaType("application", "*+json"));
+        this.payloadCache = payloadCache;
+        this.objectMapper = objectMapper;
+        this.identitySize = WeatherMetrics.responsePayloadSize(meterRegistry, "identity");
+        this.gzipSize = WeatherMetrics.responsePayloadSize(meterRegistry, "gzip");
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return CityInfo.class == clazz;
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected CityInfo readInternal(Class<? extends CityInfo> clazz, HttpInputMessage inputMessage) {
+        throw new UnsupportedOperationException("CityInfoPayloadConverter only writes weather data");
+    }
+
+    @Override
+    protected void writeInternal(CityInfo ci, HttpOutputMessage outputMessage) throws IOException {
+        CityInfoPayloadCache.Payload payload = payloadCache.get(ci);
+
+        if (payload == null) {
+            objectMapper.writeValue(outputMessage.getBody(), ci);
+            return;
+        }
+
+        byte[] body = payload.json();
+        DistributionSummary size = identitySize;
+        HttpHeaders headers = outputMessage.getHeaders();
+
+        if (payload.gzip() != null) {
+            boolean gzip = acceptsGzip();
+            headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            headers.setETag(payload.etag(gzip));
+
+            if (gzip) {
+                headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+                body = payload.gzip();
+                size = gzipSize;
+            }
+        }
+
+        size.record(body.length);
+        headers.setContentLength(body.length);
+        outputMessage.getBody().write(body);
+    }
+
+    /**
+     * Checks whether the Accept-Encoding header of the current request allows gzip.
+     *
+     * @return A boolean stating whether gzip is accepted, false if no servlet request is bound to the thread.
+     */
+    public static boolean acceptsGzip() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+
+        if (!(attributes instanceof ServletRequestAttributes servletAttributes)) {
+            return false;
+        }
+
+        HttpServletRequest request = servletAttributes.getRequest();
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+
+        if (acceptEncoding == null) {
+            return false;
+        }
+
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                return parts.length == 1 || !parts[1].trim().replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+
+        return false;
+    }
+}
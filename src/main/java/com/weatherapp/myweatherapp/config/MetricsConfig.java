@@ -0,0 +1,111 @@
+package com.weatherapp.myweatherapp.config;
+
+import java.util.concurrent.ExecutorService;
+
+import com.weatherapp.myweatherapp.repository.ForecastCache;
+import com.weatherapp.myweatherapp.repository.QuotaLimiter;
+import com.weatherapp.myweatherapp.repository.UpstreamGuard;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration class exposing the live counters of the cache, the upstream guard, the quota limiter and the fetch and refresh executors as Micrometer meters.
+ * The meters read the counters the components already keep when they are scraped, so nothing is added to the request path.
+ * Request rates and latency histograms of the endpoints are recorded by Spring Boot as `http.server.requests`, and all meters are served at `/actuator/prometheus`.
+ */
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * Binds the size, hit and miss counts, stale hits, coalesced calls and in-flight loads of the forecast cache.
+     *
+     * @param forecastCache The cache of retrieved weather data.
+     * @return A MeterBinder registering the cache meters.
+     */
+    @Bean
+    public MeterBinder forecastCacheMetrics(ForecastCache forecastCache) {
+        return registry -> {
+            Gauge.builder("weather.cache.size", forecastCache, ForecastCache::size).description("Number of cached forecasts").register(registry);
+            Gauge.builder("weather.cache.in-flight", forecastCache, ForecastCache::inFlightCount).description("Loads from Visual Crossing currently in progress").register(registry);
+            FunctionCounter.builder("weather.cache.requests", forecastCache, cache -> cache.stats().hitCount()).tag("result", "hit").description("Cache lookups").register(registry);
+            FunctionCounter.builder("weather.cache.requests", forecastCache, cache -> cache.stats().missCount()).tag("result", "miss").description("Cache lookups").register(registry);
+            FunctionCounter.builder("weather.cache.evictions", forecastCache, cache -> cache.stats().evictionCount()).description("Forecasts evicted from the cache").register(registry);
+            FunctionCounter.builder("weather.cache.stale", forecastCache, ForecastCache::staleCount).description("Requests answered with a stale forecast while it was refreshed").register(registry);
+            FunctionCounter.builder("weather.cache.coalesced", forecastCache, ForecastCache::coalescedCount).description("Callers that waited on another caller's load").register(registry);
+        };
+    }
+
+    /**
+     * Binds the in-flight calls, rejections, retries and circuit state of the upstream guard.
+     * The circuit state is one gauge per state, set to 1 for the current state and 0 for the others.
+     *
+     * @param upstreamGuard The guard around the calls to Visual Crossing.
+     * @return A MeterBinder registering the guard meters.
+     */
+    @Bean
+    public MeterBinder upstreamGuardMetrics(UpstreamGuard upstreamGuard) {
+        return registry -> {
+            Gauge.builder("weather.upstream.in-flight", upstreamGuard, UpstreamGuard::inFlightCount).description("Calls to Visual Crossing currently holding a bulkhead slot").register(registry);
+            FunctionCounter.builder("weather.upstream.rejected", upstreamGuard, UpstreamGuard::rejectedCount).description("Calls rejected by the bulkhead or the open circuit").register(registry);
+            FunctionCounter.builder("weather.upstream.retries", upstreamGuard, UpstreamGuard::retryCount).description("Retried calls to Visual Crossing").register(registry);
+
+            for (String state : new String[] {"CLOSED", "OPEN", "HALF_OPEN"}) {
+                Gauge.builder("weather.upstream.circuit.state", upstreamGuard, guard -> state.equals(guard.circuitState()) ? 1 : 0).tag("state", state).description("Current state of the circuit breaker").register(registry);
+            }
+        };
+    }
+
+    /**
+     * Binds the consumed and remaining daily quota, the available tokens and the allowed and shed requests of the quota limiter.
+     *
+     * @param quotaLimiter The limiter pacing the calls to Visual Crossing.
+     * @return A MeterBinder registering the quota meters.
+     */
+    @Bean
+    public MeterBinder quotaLimiterMetrics(QuotaLimiter quotaLimiter) {
+        return registry -> {
+            Gauge.builder("weather.quota.consumed", quotaLimiter, limiter -> limiter.status().getConsumedRecords()).baseUnit("records").description("Records consumed today").register(registry);
+            Gauge.builder("weather.quota.remaining", quotaLimiter, limiter -> limiter.status().getRemainingRecords()).baseUnit("records").description("Records left today").register(registry);
+            Gauge.builder("weather.quota.tokens", quotaLimiter, limiter -> limiter.status().getAvailableTokens()).description("Tokens currently available in the bucket").register(registry);
+            FunctionCounter.builder("weather.quota.requests", quotaLimiter, limiter -> limiter.status().getAllowedRequests()).tag("result", "allowed").description("Requests to Visual Crossing admitted or shed by the limiter").register(registry);
+            FunctionCounter.builder("weather.quota.requests", quotaLimiter, limiter -> limiter.status().getShedRequests()).tag("result", "shed").description("Requests to Visual Crossing admitted or shed by the limiter").register(registry);
+        };
+    }
+
+    /**
+     * Binds the pool size, active threads, queued tasks and completed tasks of the fetch executor, so its saturation can be watched.
+     * On virtual threads there is no pool, and the running and maximum fetches are bound instead.
+     *
+     * @param fetchExecutor The executor fetching several cities in parallel.
+     * @return A MeterBinder registering the `executor.*` meters tagged `name=weather.fetch`.
+     */
+    @Bean
+    public MeterBinder fetchExecutorMetrics(ExecutorService fetchExecutor) {
+        if (fetchExecutor instanceof BoundedExecutorService bounded) {
+            return registry -> {
+                Gauge.builder("executor.active", bounded, BoundedExecutorService::activeCount).tag("name", "weather.fetch").description("The approximate number of threads that are actively executing tasks").baseUnit("threads").register(registry);
+                Gauge.builder("executor.pool.max", bounded, BoundedExecutorService::maxConcurrent).tag("name", "weather.fetch").description("The maximum allowed number of threads in the pool").baseUnit("threads").register(registry);
+            };
+        }
+
+        return new ExecutorServiceMetrics(fetchExecutor, "weather.fetch", Tags.empty());
+    }
+
+    /**
+     * Binds the pool size, active threads, queued tasks and completed tasks of the refresh executor.
+     *
+     * @param refreshExecutor The executor running the background refreshes.
+     * @return A MeterBinder registering the `executor.*` meters tagged `name=weather.refresh`.
+     */
+    @Bean
+    public MeterBinder refreshExecutorMetrics(ExecutorService refreshExecutor) {
+        return new ExecutorServiceMetrics(refreshExecutor, "weather.refresh", Tags.empty());
+    }
+}
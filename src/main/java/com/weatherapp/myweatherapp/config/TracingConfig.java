@@ -0,0 +1,39 @@
+package com.weatherapp.myweatherapp.config;
+
+import io.opentelemetry.exporter.logging.LoggingSpanExporter;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+
+import jakarta.annotation.PostConstruct;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import reactor.core.publisher.Hooks;
+
+/**
+ * Configuration class for tracing the requests, the cache lookups, the calls to Visual Crossing and their deserialization.
+ * Spring Boot reports the observations as OpenTelemetry spans and exports them with every SpanExporter bean, so an exporter is plugged in by declaring it as a bean or adding a supported one (e.g. Zipkin) to the classpath.
+ */
+@Configuration
+public class TracingConfig {
+
+    /**
+     * Restores the current observation in every Reactor operator, so spans started in WebClient calls and in the reactive endpoints keep the request span as their parent.
+     */
+    @PostConstruct
+    public void enableReactorContextPropagation() {
+        Hooks.enableAutomaticContextPropagation();
+    }
+
+    /**
+     * Creates an exporter that writes every finished span to the log, for local testing without a tracing backend.
+     *
+     * @return A SpanExporter logging the spans at INFO level.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "weather.tracing.log-spans", havingValue = "true")
+    public SpanExporter loggingSpanExporter() {
+        return LoggingSpanExporter.create();
+    }
+}
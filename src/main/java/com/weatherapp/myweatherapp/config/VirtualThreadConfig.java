@@ -0,0 +1,34 @@
+package com.weatherapp.myweatherapp.config;
+
+import java.util.concurrent.ThreadFactory;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration class that switches Tomcat to one virtual thread per request when `weather.virtual-threads.enabled` is set.
+ * Blocking calls to Visual Crossing then park a cheap virtual thread instead of holding one of Tomcat's platform worker threads.
+ */
+@Configuration
+@ConditionalOnProperty(name = "weather.virtual-threads.enabled", havingValue = "true")
+public class VirtualThreadConfig {
+
+    /**
+     * Replaces the worker pool of Tomcat's connector with an executor starting a new virtual thread per request.
+     * 
+     * @return A customizer applied to the Tomcat protocol handler on startup.
+     * @throws IllegalStateException If the JVM does not support virtual threads.
+     */
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        ThreadFactory threadFactory = AppConfig.virtualThreadFactory();
+
+        if (threadFactory == null) {
+            throw new IllegalStateException("weather.virtual-threads.enabled requires a JVM with virtual threads (Java 21 or later), running on: " + Runtime.version());
+        }
+
+        return protocolHandler -> protocolHandler.setExecutor(runnable -> threadFactory.newThread(runnable).start());
+    }
+}
@@ -0,0 +1,60 @@
+package com.weatherapp.myweatherapp.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+
+/**
+ * Meters and observations shared by the message converters and codecs reading and writing weather data.
+ */
+final class WeatherMetrics {
+
+    private WeatherMetrics() {
+    }
+
+    /**
+     * Registers the size of the Visual Crossing response bodies read by one client.
+     *
+     * @param registry The registry the meter is added to.
+     * @param client Either `blocking` or `reactive`.
+     * @return The DistributionSummary of the body sizes in bytes.
+     */
+    static DistributionSummary upstreamPayloadSize(MeterRegistry registry, String client) {
+        return DistributionSummary.builder("weather.upstream.payload.size")
+            .description("Size of the Visual Crossing response bodies after decompression")
+            .baseUnit("bytes")
+            .tag("client", client)
+            .publishPercentileHistogram()
+            .register(registry);
+    }
+
+    /**
+     * Creates the observation of reading and parsing one Visual Crossing response body, which is both timed and traced as a span.
+     *
+     * @param registry The registry the observation reports to.
+     * @param client Either `blocking` or `reactive`.
+     * @return The Observation of the deserialization, not yet started.
+     */
+    static Observation deserialization(ObservationRegistry registry, String client) {
+        return Observation.createNotStarted("weather.upstream.deserialization", registry)
+            .contextualName("deserialize timeline")
+            .lowCardinalityKeyValue("client", client);
+    }
+
+    /**
+     * Registers the size of the CityInfo response bodies sent with one content encoding.
+     *
+     * @param registry The registry the meter is added to.
+     * @param encoding Either `identity` or `gzip`.
+     * @return The DistributionSummary of the body sizes in bytes.
+     */
+    static DistributionSummary responsePayloadSize(MeterRegistry registry, String encoding) {
+        return DistributionSummary.builder("weather.response.payload.size")
+            .description("Size of the forecast response bodies as sent")
+            .baseUnit("bytes")
+            .tag("encoding", encoding)
+            .publishPercentileHistogram()
+            .register(registry);
+    }
+}
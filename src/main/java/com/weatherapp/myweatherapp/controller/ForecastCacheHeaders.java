@@ -0,0 +1,87 @@
+package com.weatherapp.myweatherapp.controller;
+
+import com.weatherapp.myweatherapp.config.CityInfoPayloadCache;
+import com.weatherapp.myweatherapp.config.CityInfoPayloadConverter;
+import com.weatherapp.myweatherapp.model.CityInfo;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+/**
+ * Builds the HTTP caching headers of forecast responses, so that CDNs and clients can cache them and revalidate with conditional requests.
+ * The freshness is derived from the age of the upstream data, and the strong ETag is the hash of the serialized body kept in the CityInfoPayloadCache, suffixed with `-gz` for the compressed body.
+ * Spring answers a matching If-None-Match or If-Modified-Since with `304 Not Modified` from these headers before the body is written.
+ */
+@Component
+public class ForecastCacheHeaders {
+  private final CityInfoPayloadCache payloadCache;
+  private final long ttlSeconds;
+  private final long staleSeconds;
+
+  /**
+   * Creates a ForecastCacheHeaders instance.
+   *
+   * @param payloadCache Holds the serialized response bodies the ETags are computed from.
+   * @param ttlSeconds The time the weather data is fresh after it was fetched.
+   * @param staleSeconds The time after expiry the weather data is still served while it is refreshed.
+   */
+  public ForecastCacheHeaders(CityInfoPayloadCache payloadCache, @Value("${weather.cache.ttl-seconds}") long ttlSeconds, @Value("${weather.cache.stale-seconds}") long staleSeconds) {
+    this.payloadCache = payloadCache;
+    this.ttlSeconds = ttlSeconds;
+    this.staleSeconds = staleSeconds;
+  }
+
+  /**
+   * Wraps the weather data in a `200 OK` response with Cache-Control, ETag and Last-Modified headers.
+   * The max-age is the remaining freshness of the data, and stale-while-revalidate covers the window in which the application serves it stale.
+   *
+   * @param ci The weather data of the response.
+   * @return A HTTP response with the caching headers and the body containing the CityInfo object.
+   */
+  public ResponseEntity<CityInfo> ok(CityInfo ci) {
+    if (ci == null) {
+      return ResponseEntity.ok(ci);
+    }
+
+    ResponseEntity.BodyBuilder response = ResponseEntity.ok().cacheControl(cacheControl(ci.getFetchedAt()));
+    String etag = etag(ci);
+
+    if (etag != null) {
+      response.eTag(etag);
+    }
+
+    if (ci.getFetchedAt() > 0) {
+      response.lastModified(ci.getFetchedAt());
+    }
+
+    return response.body(ci);
+  }
+
+  /**
+   * Computes the strong ETag of the weather data in the encoding the current request accepts, serializing it only the first time it is asked for.
+   *
+   * @param ci The weather data.
+   * @return The quoted ETag, or null if the weather data cannot be serialized, in which case writing the body fails as well.
+   */
+  public String etag(CityInfo ci) {
+    CityInfoPayloadCache.Payload payload = payloadCache.get(ci);
+
+    return payload == null ? null : payload.etag(CityInfoPayloadConverter.acceptsGzip());
+  }
+
+  /**
+   * Derives the freshness lifetime from the age of the data, treating data of unknown age as just fetched.
+   */
+  private CacheControl cacheControl(long fetchedAt) {
+    long ageSeconds = fetchedAt > 0 ? TimeUnit.MILLISECONDS.toSeconds(Math.max(0, System.currentTimeMillis() - fetchedAt)) : 0;
+    long maxAge = Math.max(0, ttlSeconds - ageSeconds);
+    long stale = Math.max(0, Math.min(staleSeconds, ttlSeconds + staleSeconds - ageSeconds));
+
+    return CacheControl.maxAge(Duration.ofSeconds(maxAge)).cachePublic().staleWhileRevalidate(Duration.ofSeconds(stale));
+  }
+}
@@ -0,0 +1,154 @@
+package com.weatherapp.myweatherapp.controller;
+
+import com.weatherapp.myweatherapp.model.CityInfo;
+import com.weatherapp.myweatherapp.model.DaylightRanking;
+import com.weatherapp.myweatherapp.model.ForecastBatch;
+import com.weatherapp.myweatherapp.model.QuotaStatus;
+import com.weatherapp.myweatherapp.model.RainStatus;
+import com.weatherapp.myweatherapp.service.WeatherService;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.util.List;
+
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Non-blocking controller layer serving the same endpoints as WeatherController when `weather.reactive.enabled` is set.
+ * Each handler returns a Mono, so the servlet thread is released while Visual Crossing is being called and errors are mapped by the GlobalExceptionHandler as usual.
+ */
+@Controller
+@ConditionalOnProperty(name = "weather.reactive.enabled", havingValue = "true")
+@Tag(name = "Weather Controller", description = "APIs for accessing weather data from Visual Crossing Weather.")
+public class ReactiveWeatherController {
+
+  @Autowired
+  WeatherService weatherService;
+
+  @Autowired
+  ForecastCacheHeaders forecastCacheHeaders;
+
+  /**
+   * Endpoint for retrieving the weather forecast for a given city.
+   * The response carries Cache-Control, ETag and Last-Modified headers, and a conditional request for unchanged data is answered with `304 Not Modified`.
+   * 
+   * @param city The city name
+   * @return A Mono emitting the HTTP response with the body containing a CityInfo object.
+   */
+  @GetMapping("/forecast/{city}")
+  @Operation(summary = "Get weather forecast", description = "Fetches the weather data for the specified city.")
+  public Mono<ResponseEntity<CityInfo>> forecastByCity(@PathVariable("city") String city) {
+    return weatherService.forecastByCityAsync(city).map(forecastCacheHeaders::ok);
+  }
+
+  /**
+   * Endpoint for retrieving the weather forecasts of several cities in one request.
+   * The batch already fans out on the fetch executor, so it is only moved off the servlet thread here.
+   * 
+   * @param cities The comma separated city names.
+   * @return A Mono emitting the HTTP response with the body containing the forecast or the error of each distinct city.
+   */
+  @GetMapping("/forecast")
+  @Operation(summary = "Get weather forecasts for several cities", description = "Fetches the weather data for each of the specified cities, reporting cities that fail individually.")
+  public Mono<ResponseEntity<ForecastBatch>> forecastBatch(@RequestParam("cities") List<String> cities) {
+    return Mono.fromCallable(() -> weatherService.forecastBatch(cities)).subscribeOn(Schedulers.boundedElastic()).map(ResponseEntity::ok);
+  }
+
+  /**
+   * Endpoint for retrieving the weather forecasts of a list of cities too long for a query string.
+   * 
+   * @param cities The city names.
+   * @return A Mono emitting the HTTP response with the body containing the forecast or the error of each distinct city.
+   */
+  @PostMapping("/forecast/batch")
+  @Operation(summary = "Get weather forecasts for a list of cities", description = "Fetches the weather data for each city in the JSON array body, reporting cities that fail individually.")
+  public Mono<ResponseEntity<ForecastBatch>> forecastBatchByList(@RequestBody List<String> cities) {
+    return forecastBatch(cities);
+  }
+
+  /**
+   * Endpoint for comparing the daylight hours of two cities and specifies which city has the longer daylight duration.
+   * 
+   * @param city1 The first city.
+   * @param city2 The second city.
+   * @return A Mono emitting the HTTP response with the body containing a string stating which city has the longer daylight duration.
+   */
+  @GetMapping("/compare-daylight/{city1}/{city2}")
+  @Operation(summary = "Compare daylight hours", description = "Compares the daylight duration between two cities and states which city has the longer daylight duration.")
+  public Mono<ResponseEntity<String>> compareDaylightHours(@PathVariable("city1") String city1, @PathVariable("city2") String city2) {
+    return weatherService.compareDaylightHoursAsync(city1, city2).map(ResponseEntity::ok);
+  }
+
+  /**
+   * Endpoint for ranking several cities by their daylight duration.
+   * 
+   * @param cities The comma separated city names.
+   * @param top The number of cities with the longest daylight to return, all of them when omitted.
+   * @return A Mono emitting the HTTP response with the body containing the cities ordered from the longest to the shortest daylight duration.
+   */
+  @GetMapping("/daylight-ranking")
+  @Operation(summary = "Rank daylight hours", description = "Ranks the specified cities from the longest to the shortest daylight duration, optionally keeping only the top cities.")
+  public Mono<ResponseEntity<DaylightRanking>> rankDaylight(@RequestParam("cities") List<String> cities, @RequestParam(value = "top", required = false) Integer top) {
+    return Mono.fromCallable(() -> weatherService.rankDaylight(cities, top)).subscribeOn(Schedulers.boundedElastic()).map(ResponseEntity::ok);
+  }
+
+  /**
+   * Endpoint for checking the weather conditions of two cities and specifies whether they're experiencing raining or not.
+   * 
+   * @param city1 The first city.
+   * @param city2 The second city.
+   * @return A Mono emitting the HTTP response with the body containing a string stating where it is currently raining.
+   */
+  @GetMapping("/rain-check/{city1}/{city2}")
+  @Operation(summary = "Check rain conditions", description = "Checks the weather conditions of two cities and states where it is raining.")
+  public Mono<ResponseEntity<String>> rainCheck(@PathVariable("city1") String city1, @PathVariable("city2") String city2) {
+    return weatherService.rainCheckAsync(city1, city2).map(ResponseEntity::ok);
+  }
+
+  /**
+   * Endpoint for checking whether it is raining in each of several cities.
+   * 
+   * @param cities The comma separated city names.
+   * @return A Mono emitting the HTTP response with the body mapping each city to whether it is raining there.
+   */
+  @GetMapping("/rain-status")
+  @Operation(summary = "Check rain status of several cities", description = "Checks whether it is currently raining in each of the specified cities, reporting cities that fail individually.")
+  public Mono<ResponseEntity<RainStatus>> rainStatus(@RequestParam("cities") List<String> cities) {
+    return Mono.fromCallable(() -> weatherService.rainStatus(cities)).subscribeOn(Schedulers.boundedElastic()).map(ResponseEntity::ok);
+  }
+
+  /**
+   * Endpoint for checking whether it is raining in a list of cities too long for a query string.
+   * 
+   * @param cities The city names.
+   * @return A Mono emitting the HTTP response with the body mapping each city to whether it is raining there.
+   */
+  @PostMapping("/rain-status")
+  @Operation(summary = "Check rain status of a list of cities", description = "Checks whether it is currently raining in each city of the JSON array body, reporting cities that fail individually.")
+  public Mono<ResponseEntity<RainStatus>> rainStatusByList(@RequestBody List<String> cities) {
+    return rainStatus(cities);
+  }
+
+  /**
+   * Endpoint for retrieving how much of the daily Visual Crossing quota has been consumed.
+   * 
+   * @return A Mono emitting the HTTP response with the body containing a QuotaStatus object.
+   */
+  @GetMapping("/quota")
+  @Operation(summary = "Get Visual Crossing quota usage", description = "Returns the records consumed and remaining in the daily Visual Crossing quota and the requests shed by the rate limiter.")
+  public Mono<ResponseEntity<QuotaStatus>> quotaStatus() {
+    return Mono.fromSupplier(weatherService::quotaStatus).map(ResponseEntity::ok);
+  }
+}
@@ -1,31 +1,47 @@
 package com.weatherapp.myweatherapp.controller;
 
 import com.weatherapp.myweatherapp.model.CityInfo;
+import com.weatherapp.myweatherapp.model.DaylightRanking;
+import com.weatherapp.myweatherapp.model.ForecastBatch;
+import com.weatherapp.myweatherapp.model.QuotaStatus;
+import com.weatherapp.myweatherapp.model.RainStatus;
 import com.weatherapp.myweatherapp.service.WeatherService;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.util.List;
 
 
 /**
  * Controller layer responsible for accepting HTTP requests.
  * This class interacts with the Service layer to trigger the appropriate business logic based on the endpoint.  
+ * It is replaced by ReactiveWeatherController when `weather.reactive.enabled` is set.
  */
 @Controller
+@ConditionalOnProperty(name = "weather.reactive.enabled", havingValue = "false", matchIfMissing = true)
 @Tag(name = "Weather Controller", description = "APIs for accessing weather data from Visual Crossing Weather.")
 public class WeatherController {
 
   @Autowired
   WeatherService weatherService;
 
+  @Autowired
+  ForecastCacheHeaders forecastCacheHeaders;
+
   /**
    * Endpoint for retrieving the weather forecast for a given city.
+   * The response carries Cache-Control, ETag and Last-Modified headers, and a conditional request for unchanged data is answered with `304 Not Modified`.
    * 
    * @param city The city name
    * @return A HTTP response with the body containing a CityInfo object.
@@ -35,7 +51,35 @@ public class WeatherController {
   public ResponseEntity<CityInfo> forecastByCity(@PathVariable("city") String city) {
     CityInfo ci = weatherService.forecastByCity(city);
 
-    return ResponseEntity.ok(ci);
+    return forecastCacheHeaders.ok(ci);
+  }
+
+  /**
+   * Endpoint for retrieving the weather forecasts of several cities in one request.
+   * 
+   * @param cities The comma separated city names.
+   * @return A HTTP response with the body containing the forecast or the error of each distinct city.
+   */
+  @GetMapping("/forecast")
+  @Operation(summary = "Get weather forecasts for several cities", description = "Fetches the weather data for each of the specified cities, reporting cities that fail individually.")
+  public ResponseEntity<ForecastBatch> forecastBatch(@RequestParam("cities") List<String> cities) {
+    ForecastBatch batch = weatherService.forecastBatch(cities);
+
+    return ResponseEntity.ok(batch);
+  }
+
+  /**
+   * Endpoint for retrieving the weather forecasts of a list of cities too long for a query string.
+   * 
+   * @param cities The city names.
+   * @return A HTTP response with the body containing the forecast or the error of each distinct city.
+   */
+  @PostMapping("/forecast/batch")
+  @Operation(summary = "Get weather forecasts for a list of cities", description = "Fetches the weather data for each city in the JSON array body, reporting cities that fail individually.")
+  public ResponseEntity<ForecastBatch> forecastBatchByList(@RequestBody List<String> cities) {
+    ForecastBatch batch = weatherService.forecastBatch(cities);
+
+    return ResponseEntity.ok(batch);
   }
 
   /**
@@ -53,6 +97,21 @@ public class WeatherController {
     return ResponseEntity.ok(longestDay);
   }
 
+  /**
+   * Endpoint for ranking several cities by their daylight duration.
+   * 
+   * @param cities The comma separated city names.
+   * @param top The number of cities with the longest daylight to return, all of them when omitted.
+   * @return A HTTP response with the body containing the cities ordered from the longest to the shortest daylight duration.
+   */
+  @GetMapping("/daylight-ranking")
+  @Operation(summary = "Rank daylight hours", description = "Ranks the specified cities from the longest to the shortest daylight duration, optionally keeping only the top cities.")
+  public ResponseEntity<DaylightRanking> rankDaylight(@RequestParam("cities") List<String> cities, @RequestParam(value = "top", required = false) Integer top) {
+    DaylightRanking ranking = weatherService.rankDaylight(cities, top);
+
+    return ResponseEntity.ok(ranking);
+  }
+
   /**
    * Endpoint for checking the weather conditions of two cities and specifies whether they're experiencing raining or not.
    * 
@@ -67,4 +126,45 @@ public class WeatherController {
 
     return ResponseEntity.ok(rainConditions);
   }
-}
\ No newline at end of file
+
+  /**
+   * Endpoint for checking whether it is raining in each of several cities.
+   * 
+   * @param cities The comma separated city names.
+   * @return A HTTP response with the body mapping each city to whether it is raining there.
+   */
+  @GetMapping("/rain-status")
+  @Operation(summary = "Check rain status of several cities", description = "Checks whether it is currently raining in each of the specified cities, reporting cities that fail individually.")
+  public ResponseEntity<RainStatus> rainStatus(@RequestParam("cities") List<String> cities) {
+    RainStatus status = weatherService.rainStatus(cities);
+
+    return ResponseEntity.ok(status);
+  }
+
+  /**
+   * Endpoint for checking whether it is raining in a list of cities too long for a query string.
+   * 
+   * @param cities The city names.
+   * @return A HTTP response with the body mapping each city to whether it is raining there.
+   */
+  @PostMapping("/rain-status")
+  @Operation(summary = "Check rain status of a list of cities", description = "Checks whether it is currently raining in each city of the JSON array body, reporting cities that fail individually.")
+  public ResponseEntity<RainStatus> rainStatusByList(@RequestBody List<String> cities) {
+    RainStatus status = weatherService.rainStatus(cities);
+
+    return ResponseEntity.ok(status);
+  }
+
+  /**
+   * Endpoint for retrieving how much of the daily Visual Crossing quota has been consumed.
+   * 
+   * @return A HTTP response with the body containing a QuotaStatus object.
+   */
+  @GetMapping("/quota")
+  @Operation(summary = "Get Visual Crossing quota usage", description = "Returns the records consumed and remaining in the daily Visual Crossing quota and the requests shed by the rate limiter.")
+  public ResponseEntity<QuotaStatus> quotaStatus() {
+    QuotaStatus status = weatherService.quotaStatus();
+
+    return ResponseEntity.ok(status);
+  }
+}
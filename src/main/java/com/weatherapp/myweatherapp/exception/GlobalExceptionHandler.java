@@ -1,6 +1,11 @@
 package com.weatherapp.myweatherapp.exception;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
@@ -10,9 +15,20 @@ import org.springframework.web.client.HttpServerErrorException;
 /**
  * Global Exception Handler responsible for catching exceptions across the entire applicaton.
  * This class a appropriate HTTP response wih the appropriate error message when an exception occurs.  
+ * Every handled exception is counted by handler and status as `weather.errors`.
  */
 @RestControllerAdvice
 public class GlobalExceptionHandler {
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Creates a GlobalExceptionHandler instance.
+     * 
+     * @param meterRegistry Counts the handled exceptions.
+     */
+    public GlobalExceptionHandler(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
 
     /**
      * Handles cases where an invalid argument is provided.
@@ -22,6 +38,7 @@ public class GlobalExceptionHandler {
      */
     @ExceptionHandler(IllegalArgumentException.class) 
     public ResponseEntity<String> handleIllegalArgument(IllegalArgumentException e) {
+        count("illegal_argument", HttpStatus.BAD_REQUEST);
         return ResponseEntity.badRequest().body(e.getMessage());
     }
 
@@ -33,18 +50,28 @@ public class GlobalExceptionHandler {
      */
     @ExceptionHandler(IllegalStateException.class) 
     public ResponseEntity<String> handleIllegalStateException(IllegalStateException e) {
+        count("illegal_state", HttpStatus.INTERNAL_SERVER_ERROR);
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(e.getMessage());
     }
 
     /**
      * Handles client errors due to invalid requests (e.g., invalid city name, invalid API key).
+     * The Retry-After header of a 429 response is passed on, so that clients know when to try again.
      * 
      * @param e The exception containing details about the client error.
      * @return A response with the error status code and message.
      */
     @ExceptionHandler(HttpClientErrorException.class) 
     public ResponseEntity<String> handleHttpClientError(HttpClientErrorException e) {
-        return ResponseEntity.status(e.getStatusCode()).body(e.getMessage());
+        count("http_client_error", e.getStatusCode());
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(e.getStatusCode());
+        HttpHeaders headers = e.getResponseHeaders();
+
+        if (headers != null && headers.getFirst(HttpHeaders.RETRY_AFTER) != null) {
+            response.header(HttpHeaders.RETRY_AFTER, headers.getFirst(HttpHeaders.RETRY_AFTER));
+        }
+
+        return response.body(e.getMessage());
     }
 
     /**
@@ -55,6 +82,7 @@ public class GlobalExceptionHandler {
      */
     @ExceptionHandler(HttpServerErrorException.class) 
     public ResponseEntity<String> handleHttpServerError(HttpServerErrorException e) {
+        count("http_server_error", e.getStatusCode());
         return ResponseEntity.status(e.getStatusCode()).body(e.getMessage());
     }
 
@@ -66,6 +94,19 @@ public class GlobalExceptionHandler {
      */
     @ExceptionHandler(Exception.class) 
     public ResponseEntity<String> handleGenericException(Exception e) {
+        count("generic", HttpStatus.INTERNAL_SERVER_ERROR);
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(e.getMessage());
     }
+
+    /**
+     * Increments the error counter of the handler and status.
+     */
+    private void count(String handler, HttpStatusCode status) {
+        Counter.builder("weather.errors")
+            .description("Exceptions mapped to an error response by the GlobalExceptionHandler")
+            .tag("handler", handler)
+            .tag("status", String.valueOf(status.value()))
+            .register(meterRegistry)
+            .increment();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,28 @@
+package com.weatherapp.myweatherapp.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Model describing why the weather data of a single city in a multi-city request could not be produced.
+ * The status and message are the ones the GlobalExceptionHandler would have returned for a single-city request.
+ */
+public class CityError {
+  @JsonProperty("status")
+  int status;
+
+  @JsonProperty("message")
+  String message;
+
+  public CityError(int status, String message) {
+    this.status = status;
+    this.message = message;
+  }
+
+  public int getStatus() {
+    return status;
+  }
+
+  public String getMessage() {
+    return message;
+  }
+}
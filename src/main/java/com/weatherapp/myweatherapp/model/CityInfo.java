@@ -1,44 +1,31 @@
 package com.weatherapp.myweatherapp.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
-import java.util.Set;
-import java.time.Duration;
-import java.time.LocalTime;
-import java.time.format.DateTimeParseException;
 
 /**
  * Model layer stores the weather data of a specific city represented as a CityInfo class.
  * This class contains properties and methods for accessing the data as well as implementation for the daylight duration and rain check features.
  */
 public class CityInfo {
-  //A set containing the code names for rain conditions
-  private static final Set<String> RAIN_CODES = Set.of(
-    "type_21",
-    "type_10",
-    "type_11",
-    "type_13",
-    "type_14",
-    "type_22",
-    "type_23",
-    "type_24",
-    "type_25",
-    "type_26",
-    "type_3",
-    "type_32",
-    "type_37",
-    "type_4",
-    "type_5",
-    "type_6",
-    "type_9"
-  );
   
   @JsonProperty("address")
   String address;
 
+  @JsonProperty("resolvedAddress")
+  String resolvedAddress;
+
+  @JsonProperty("latitude")
+  Double latitude;
+
+  @JsonProperty("longitude")
+  Double longitude;
+
   @JsonProperty("description")
   String description;
 
@@ -48,6 +35,9 @@ public class CityInfo {
   @JsonProperty("days")
   List<Days> days;
 
+  //When the data was fetched from Visual Crossing in epoch milliseconds, 0 if unknown
+  long fetchedAt;
+
   public CityInfo () {
     this.currentConditions = new CurrentConditions();
     this.days = new ArrayList<>(); 
@@ -61,6 +51,64 @@ public class CityInfo {
     this.address = address;
   }
 
+  /**
+   * Creates a copy of the weather data carrying another requested address, sharing every other field with this object.
+   * 
+   * @param address The address the data was requested as.
+   * @return The copy of the CityInfo object.
+   */
+  public CityInfo withAddress(String address) {
+    CityInfo copy = new CityInfo();
+    copy.address = address;
+    copy.resolvedAddress = resolvedAddress;
+    copy.latitude = latitude;
+    copy.longitude = longitude;
+    copy.description = description;
+    copy.currentConditions = currentConditions;
+    copy.days = days;
+    copy.fetchedAt = fetchedAt;
+
+    return copy;
+  }
+
+  public String getResolvedAddress() {
+    return resolvedAddress;
+  }
+
+  public void setResolvedAddress(String resolvedAddress) {
+    this.resolvedAddress = resolvedAddress;
+  }
+
+  public Double getLatitude() {
+    return latitude;
+  }
+
+  public void setLatitude(Double latitude) {
+    this.latitude = latitude;
+  }
+
+  public Double getLongitude() {
+    return longitude;
+  }
+
+  public void setLongitude(Double longitude) {
+    this.longitude = longitude;
+  }
+
+  /**
+   * Accesses the time the weather data was fetched from Visual Crossing, which is not part of the response body.
+   * 
+   * @return The fetch time in epoch milliseconds, or 0 if it is unknown.
+   */
+  @JsonIgnore
+  public long getFetchedAt() {
+    return fetchedAt;
+  }
+
+  public void setFetchedAt(long fetchedAt) {
+    this.fetchedAt = fetchedAt;
+  }
+
   /**
    * Accesses the sunrise field.
    * 
@@ -71,7 +119,7 @@ public class CityInfo {
   }
 
   public void setSunrise(String sunrise) {
-    this.currentConditions.sunrise = sunrise;
+    this.currentConditions.setSunrise(sunrise);
   }
 
   /**
@@ -84,7 +132,37 @@ public class CityInfo {
   }
 
   public void setSunset(String sunset) {
-    this.currentConditions.sunset = sunset;
+    this.currentConditions.setSunset(sunset);
+  }
+
+  /**
+   * Accesses the current temperature parsed when the data was bound.
+   * 
+   * @return The temperature, or NaN if it was not provided.
+   */
+  @JsonIgnore
+  public double getTemperature() {
+    return currentConditions.temperatureValue;
+  }
+
+  /**
+   * Accesses the current feels like temperature parsed when the data was bound.
+   * 
+   * @return The feels like temperature, or NaN if it was not provided.
+   */
+  @JsonIgnore
+  public double getFeelsLike() {
+    return currentConditions.feelsLikeValue;
+  }
+
+  /**
+   * Accesses the current relative humidity parsed when the data was bound.
+   * 
+   * @return The humidity in percent, or NaN if it was not provided.
+   */
+  @JsonIgnore
+  public double getHumidity() {
+    return currentConditions.humidityValue;
   }
 
   /**
@@ -102,29 +180,64 @@ public class CityInfo {
   }
 
   public void setConditions(String conditions) {
-    currentConditions.conditions = conditions;
+    currentConditions.setConditions(conditions);
+  }
+
+  /**
+   * Accesses the condition code names, falling back to the conditions field when it already holds code names.
+   * 
+   * @return The current weather conditions as code names.
+   * @throws IllegalStateException If the conditions field are empty.
+   */
+  public String getConditionCodes() {
+    if (currentConditions != null && currentConditions.conditionCodes != null) {
+      return currentConditions.conditionCodes;
+    }
+
+    return getConditions();
+  }
+
+  /**
+   * Replaces condition code names with their English text, keeping the code names in the conditionCodes fields.
+   * This lets one response fetched with `lang=id` serve both the rain check and the forecast.
+   */
+  public void describeConditionCodes() {
+    if (currentConditions != null && ConditionCodes.isCodeList(currentConditions.conditions)) {
+      currentConditions.setConditionCodes(currentConditions.conditions);
+      currentConditions.setConditions(ConditionCodes.describe(currentConditions.conditions));
+    }
+
+    if (days != null) {
+      for (Days day : days) {
+        if (ConditionCodes.isCodeList(day.conditions)) {
+          day.conditionCodes = day.conditions;
+          day.conditions = ConditionCodes.describe(day.conditions);
+        }
+      }
+    }
   }
 
   /**
    * Calculates the daylight duration for the city using the sunrise and sunset times.
+   * The times are parsed into seconds of the day once when they are set, so this is a subtraction.
    * 
    * @return The daylight duration in seconds.
    * @throws IllegalStateException If the sunrise or sunset fields are empty.
    * @throws IllegalArgumentException If the time format for sunrise and sunset are invalid.
    */
   public long getDaylightDuration() {
-    String sunrise = getSunrise();
-    String sunset = getSunset();
+    int sunrise = currentConditions.sunriseSecond;
+    int sunset = currentConditions.sunsetSecond;
 
-    if (sunrise == null || sunset == null) {
+    if (sunrise == TimeOfDay.MISSING || sunset == TimeOfDay.MISSING) {
       throw new IllegalStateException("Sunrise or sunset data is missing for: " + address);
     }
 
-    try {
-      return Duration.between(LocalTime.parse(sunrise), LocalTime.parse(sunset)).getSeconds(); 
-    } catch(DateTimeParseException e) {
+    if (sunrise == TimeOfDay.INVALID || sunset == TimeOfDay.INVALID) {
       throw new IllegalArgumentException("Invalid time format for sunrise or sunet for: " + address);
     }
+
+    return sunset - sunrise;
   }
 
   /**
@@ -133,11 +246,36 @@ public class CityInfo {
    * @return A boolean stating whether the city has rain or not.
    */
   public boolean isRaining() {
-    return Arrays.stream(getConditions().split(","))
-      .map(String::trim)
-      .anyMatch(RAIN_CODES::contains);
+    return (getConditionMask() & ConditionCodes.RAIN_MASK) != 0;
+  }
+
+  /**
+   * Checks whether the current conditions include the given condition code.
+   * 
+   * @param code The number N of the code name `type_N`.
+   * @return A boolean stating whether the condition is currently reported.
+   * @throws IllegalStateException If the conditions field are empty.
+   */
+  public boolean hasCondition(int code) {
+    return code >= 0 && code < Long.SIZE && (getConditionMask() & (1L << code)) != 0;
   }
 
+  /**
+   * Accesses the current condition codes parsed into a bitmask when the conditions were set.
+   * 
+   * @return The bitmask where bit N is set for code name `type_N`.
+   * @throws IllegalStateException If the conditions field are empty.
+   */
+  private long getConditionMask() {
+    if (currentConditions == null || (currentConditions.conditions == null && currentConditions.conditionCodes == null)) {
+      throw new IllegalStateException("Conditions data is missing for: " + address);
+    }
+
+    return currentConditions.conditionMask;
+  }
+
+  //The timeline carries many more current fields than the application uses, whichever ObjectMapper binds it
+  @JsonIgnoreProperties(ignoreUnknown = true)
   static class CurrentConditions {
     @JsonProperty("temp")
     String currentTemperature;
@@ -154,8 +292,83 @@ public class CityInfo {
     @JsonProperty("humidity")
     String humidity;
 
+    //The temperatures and humidity as numbers, parsed whenever they change while the strings above stay the serialized form
+    private double temperatureValue = Double.NaN;
+    private double feelsLikeValue = Double.NaN;
+    private double humidityValue = Double.NaN;
+
+    //Sunrise and sunset as seconds of the day, parsed whenever they change
+    int sunriseSecond = TimeOfDay.MISSING;
+    int sunsetSecond = TimeOfDay.MISSING;
+
     @JsonProperty("conditions")
     String conditions;
+
+    @JsonProperty("conditionCodes")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    String conditionCodes;
+
+    //Parsed from the code names whenever they change, including during JSON binding
+    long conditionMask;
+
+    @JsonProperty("conditions")
+    void setConditions(String conditions) {
+      this.conditions = conditions;
+      updateConditionMask();
+    }
+
+    @JsonProperty("conditionCodes")
+    void setConditionCodes(String conditionCodes) {
+      this.conditionCodes = conditionCodes;
+      updateConditionMask();
+    }
+
+    private void updateConditionMask() {
+      conditionMask = ConditionCodes.mask(conditionCodes != null ? conditionCodes : conditions);
+    }
+
+    @JsonProperty("temp")
+    void setTemperature(String temp) {
+      this.currentTemperature = temp;
+      this.temperatureValue = parseNumber(temp);
+    }
+
+    @JsonProperty("feelslike")
+    void setFeelsLike(String feelslike) {
+      this.feelslike = feelslike;
+      this.feelsLikeValue = parseNumber(feelslike);
+    }
+
+    @JsonProperty("humidity")
+    void setHumidity(String humidity) {
+      this.humidity = humidity;
+      this.humidityValue = parseNumber(humidity);
+    }
+
+    private static double parseNumber(String value) {
+      if (value == null) {
+        return Double.NaN;
+      }
+
+      try {
+        return Double.parseDouble(value);
+      } catch (NumberFormatException e) {
+        return Double.NaN;
+      }
+    }
+
+    //A malformed time is kept as INVALID, so only the daylight duration fails for it and the other endpoints still serve the city
+    @JsonProperty("sunrise")
+    void setSunrise(String sunrise) {
+      this.sunrise = sunrise;
+      this.sunriseSecond = TimeOfDay.parseSecondOfDay(sunrise);
+    }
+
+    @JsonProperty("sunset")
+    void setSunset(String sunset) {
+      this.sunset = sunset;
+      this.sunsetSecond = TimeOfDay.parseSecondOfDay(sunset);
+    }
   }
   static class Days {
 
@@ -174,6 +387,10 @@ public class CityInfo {
     @JsonProperty("conditions")
     String conditions;
 
+    @JsonProperty("conditionCodes")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    String conditionCodes;
+
     @JsonProperty("description")
     String description;
   }
@@ -0,0 +1,81 @@
+package com.weatherapp.myweatherapp.model;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.JsonParseException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming reader binding a Visual Crossing timeline response into a CityInfo object.
+ * Only the fields CityInfo keeps are bound; every other subtree (e.g. the hourly data of each day, stations and alerts) is skipped token by token without being materialized.
+ */
+public final class CityInfoReader {
+
+  private CityInfoReader() {}
+
+  /**
+   * Reads a CityInfo object from the parser, which must be positioned before the root object and have an ObjectCodec for the current conditions.
+   * 
+   * @param parser The parser reading the response body.
+   * @return The CityInfo object.
+   * @throws IOException If the body cannot be read or is not a valid timeline response.
+   */
+  public static CityInfo read(JsonParser parser) throws IOException {
+    if (parser.nextToken() != JsonToken.START_OBJECT) {
+      throw new JsonParseException(parser, "Expected a JSON object for the weather data");
+    }
+
+    CityInfo ci = new CityInfo();
+
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      JsonToken value = parser.nextToken();
+
+      switch (field) {
+        case "address" -> ci.address = parser.getValueAsString();
+        case "resolvedAddress" -> ci.resolvedAddress = parser.getValueAsString();
+        case "latitude" -> ci.latitude = value.isNumeric() ? parser.getDoubleValue() : null;
+        case "longitude" -> ci.longitude = value.isNumeric() ? parser.getDoubleValue() : null;
+        case "description" -> ci.description = parser.getValueAsString();
+        case "currentConditions" -> ci.currentConditions = value == JsonToken.VALUE_NULL ? null : parser.readValueAs(CityInfo.CurrentConditions.class);
+        case "days" -> ci.days = value == JsonToken.VALUE_NULL ? null : readDays(parser);
+        default -> parser.skipChildren();
+      }
+    }
+
+    return ci;
+  }
+
+  /**
+   * Reads the days array, skipping the hourly data and any other field the Days class does not keep.
+   */
+  private static List<CityInfo.Days> readDays(JsonParser parser) throws IOException {
+    List<CityInfo.Days> days = new ArrayList<>();
+
+    while (parser.nextToken() == JsonToken.START_OBJECT) {
+      CityInfo.Days day = new CityInfo.Days();
+
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        parser.nextToken();
+
+        switch (field) {
+          case "datetime" -> day.date = parser.getValueAsString();
+          case "temp" -> day.currentTemperature = parser.getValueAsString();
+          case "tempmax" -> day.maxTemperature = parser.getValueAsString();
+          case "tempmin" -> day.minTemperature = parser.getValueAsString();
+          case "conditions" -> day.conditions = parser.getValueAsString();
+          case "conditionCodes" -> day.conditionCodes = parser.getValueAsString();
+          case "description" -> day.description = parser.getValueAsString();
+          default -> parser.skipChildren();
+        }
+      }
+      days.add(day);
+    }
+
+    return days;
+  }
+}
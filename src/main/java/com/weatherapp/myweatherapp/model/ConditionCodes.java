@@ -0,0 +1,132 @@
+package com.weatherapp.myweatherapp.model;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Translates the weather condition code names returned by Visual Crossing with `lang=id` into their English descriptions.
+ * This allows a single response fetched with code names to serve both the rain check and the human-readable forecast.
+ */
+public final class ConditionCodes {
+  //The English text of each condition code, as published by Visual Crossing
+  private static final Map<String, String> DESCRIPTIONS = Map.ofEntries(
+    Map.entry("type_1", "Blowing Or Drifting Snow"),
+    Map.entry("type_2", "Drizzle"),
+    Map.entry("type_3", "Heavy Drizzle"),
+    Map.entry("type_4", "Light Drizzle"),
+    Map.entry("type_5", "Heavy Drizzle/Rain"),
+    Map.entry("type_6", "Light Drizzle/Rain"),
+    Map.entry("type_7", "Duststorm"),
+    Map.entry("type_8", "Fog"),
+    Map.entry("type_9", "Freezing Drizzle/Freezing Rain"),
+    Map.entry("type_10", "Heavy Freezing Drizzle/Freezing Rain"),
+    Map.entry("type_11", "Light Freezing Drizzle/Freezing Rain"),
+    Map.entry("type_12", "Freezing Fog"),
+    Map.entry("type_13", "Heavy Freezing Rain"),
+    Map.entry("type_14", "Light Freezing Rain"),
+    Map.entry("type_15", "Funnel Cloud/Tornado"),
+    Map.entry("type_16", "Hail Showers"),
+    Map.entry("type_17", "Ice"),
+    Map.entry("type_18", "Lightning Without Thunder"),
+    Map.entry("type_19", "Mist"),
+    Map.entry("type_20", "Precipitation In Vicinity"),
+    Map.entry("type_21", "Rain"),
+    Map.entry("type_22", "Heavy Rain And Snow"),
+    Map.entry("type_23", "Light Rain And Snow"),
+    Map.entry("type_24", "Rain Showers"),
+    Map.entry("type_25", "Heavy Rain"),
+    Map.entry("type_26", "Light Rain"),
+    Map.entry("type_27", "Sky Coverage Decreasing"),
+    Map.entry("type_28", "Sky Coverage Increasing"),
+    Map.entry("type_29", "Sky Unchanged"),
+    Map.entry("type_30", "Smoke Or Haze"),
+    Map.entry("type_31", "Snow"),
+    Map.entry("type_32", "Snow And Rain Showers"),
+    Map.entry("type_33", "Snow Showers"),
+    Map.entry("type_34", "Heavy Snow"),
+    Map.entry("type_35", "Light Snow"),
+    Map.entry("type_36", "Squalls"),
+    Map.entry("type_37", "Thunderstorm"),
+    Map.entry("type_38", "Thunderstorm Without Precipitation"),
+    Map.entry("type_39", "Diamond Dust"),
+    Map.entry("type_40", "Hail"),
+    Map.entry("type_41", "Overcast"),
+    Map.entry("type_42", "Partially cloudy"),
+    Map.entry("type_43", "Clear")
+  );
+  //The codes describing rain, as a bitmask where bit N is set for code name `type_N`, so the rain check is a single bit test
+  static final long RAIN_MASK = bits(3, 4, 5, 6, 9, 10, 11, 13, 14, 21, 22, 23, 24, 25, 26, 32, 37);
+
+  private ConditionCodes() {}
+
+  /**
+   * Checks whether the conditions are expressed as code names rather than text.
+   * 
+   * @param conditions The conditions field of a Visual Crossing response.
+   * @return A boolean stating whether the conditions start with a code name.
+   */
+  public static boolean isCodeList(String conditions) {
+    return conditions != null && conditions.trim().startsWith("type_");
+  }
+
+  /**
+   * Parses a comma separated list of code names into a bitmask where bit N is set for code name `type_N`.
+   * The string is scanned in place without splitting, so parsing allocates nothing. Codes above 63 are ignored.
+   * 
+   * @param codes The comma separated code names, e.g. "type_21, type_41", or null.
+   * @return The bitmask of the code names, 0 if there are none.
+   */
+  public static long mask(String codes) {
+    long mask = 0;
+
+    if (codes == null) {
+      return mask;
+    }
+
+    int length = codes.length();
+    int start = codes.indexOf("type_");
+
+    while (start >= 0) {
+      int i = start + 5;
+      int code = 0;
+      boolean hasDigits = false;
+
+      for (; i < length && codes.charAt(i) >= '0' && codes.charAt(i) <= '9'; i++) {
+        code = Math.min(code * 10 + (codes.charAt(i) - '0'), Long.SIZE);
+        hasDigits = true;
+      }
+
+      if (hasDigits && code < Long.SIZE) {
+        mask |= 1L << code;
+      }
+      start = codes.indexOf("type_", i);
+    }
+
+    return mask;
+  }
+
+  private static long bits(int... codes) {
+    long mask = 0;
+
+    for (int code : codes) {
+      mask |= 1L << code;
+    }
+
+    return mask;
+  }
+
+  /**
+   * Translates a comma separated list of code names into the text Visual Crossing returns without `lang=id`.
+   * Unknown codes are kept as they are.
+   * 
+   * @param codes The comma separated code names, e.g. "type_21, type_41".
+   * @return The comma separated descriptions, e.g. "Rain, Overcast".
+   */
+  public static String describe(String codes) {
+    return Arrays.stream(codes.split(","))
+      .map(String::trim)
+      .map(code -> DESCRIPTIONS.getOrDefault(code, code))
+      .collect(Collectors.joining(", "));
+  }
+}
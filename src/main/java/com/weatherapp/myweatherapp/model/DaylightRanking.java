@@ -0,0 +1,57 @@
+package com.weatherapp.myweatherapp.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Model holding several cities ordered from the longest to the shortest daylight duration.
+ * Cities that could not be fetched or whose daylight duration could not be calculated are listed in the errors map.
+ */
+public class DaylightRanking {
+  @JsonProperty("ranking")
+  List<Entry> ranking = new ArrayList<>();
+
+  @JsonProperty("errors")
+  Map<String, CityError> errors = new LinkedHashMap<>();
+
+  public List<Entry> getRanking() {
+    return ranking;
+  }
+
+  public Map<String, CityError> getErrors() {
+    return errors;
+  }
+
+  public static class Entry {
+    @JsonProperty("city")
+    String city;
+
+    @JsonProperty("address")
+    String address;
+
+    @JsonProperty("daylightSeconds")
+    long daylightSeconds;
+
+    public Entry(String city, String address, long daylightSeconds) {
+      this.city = city;
+      this.address = address;
+      this.daylightSeconds = daylightSeconds;
+    }
+
+    public String getCity() {
+      return city;
+    }
+
+    public String getAddress() {
+      return address;
+    }
+
+    public long getDaylightSeconds() {
+      return daylightSeconds;
+    }
+  }
+}
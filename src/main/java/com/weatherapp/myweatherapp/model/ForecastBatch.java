@@ -0,0 +1,26 @@
+package com.weatherapp.myweatherapp.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Model holding the weather forecasts of several cities requested at once.
+ * Cities that could not be fetched are listed in the errors map instead of failing the whole batch.
+ */
+public class ForecastBatch {
+  @JsonProperty("forecasts")
+  Map<String, CityInfo> forecasts = new LinkedHashMap<>();
+
+  @JsonProperty("errors")
+  Map<String, CityError> errors = new LinkedHashMap<>();
+
+  public Map<String, CityInfo> getForecasts() {
+    return forecasts;
+  }
+
+  public Map<String, CityError> getErrors() {
+    return errors;
+  }
+}
@@ -0,0 +1,68 @@
+package com.weatherapp.myweatherapp.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Model holding a snapshot of the Visual Crossing quota spent by the application.
+ * Records are counted the way Visual Crossing bills them, while requests are counted by the local rate limiter.
+ */
+public class QuotaStatus {
+  @JsonProperty("dailyRecords")
+  long dailyRecords;
+
+  @JsonProperty("consumedRecords")
+  long consumedRecords;
+
+  @JsonProperty("remainingRecords")
+  long remainingRecords;
+
+  @JsonProperty("availableTokens")
+  double availableTokens;
+
+  @JsonProperty("allowedRequests")
+  long allowedRequests;
+
+  @JsonProperty("shedRequests")
+  long shedRequests;
+
+  @JsonProperty("resetsAt")
+  String resetsAt;
+
+  public QuotaStatus(long dailyRecords, long consumedRecords, double availableTokens, long allowedRequests, long shedRequests, String resetsAt) {
+    this.dailyRecords = dailyRecords;
+    this.consumedRecords = consumedRecords;
+    this.remainingRecords = Math.max(0, dailyRecords - consumedRecords);
+    this.availableTokens = availableTokens;
+    this.allowedRequests = allowedRequests;
+    this.shedRequests = shedRequests;
+    this.resetsAt = resetsAt;
+  }
+
+  public long getDailyRecords() {
+    return dailyRecords;
+  }
+
+  public long getConsumedRecords() {
+    return consumedRecords;
+  }
+
+  public long getRemainingRecords() {
+    return remainingRecords;
+  }
+
+  public double getAvailableTokens() {
+    return availableTokens;
+  }
+
+  public long getAllowedRequests() {
+    return allowedRequests;
+  }
+
+  public long getShedRequests() {
+    return shedRequests;
+  }
+
+  public String getResetsAt() {
+    return resetsAt;
+  }
+}
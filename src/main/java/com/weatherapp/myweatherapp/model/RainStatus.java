@@ -0,0 +1,26 @@
+package com.weatherapp.myweatherapp.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Model holding whether it is currently raining in each of several cities.
+ * Cities that could not be fetched or whose conditions are missing are listed in the errors map.
+ */
+public class RainStatus {
+  @JsonProperty("raining")
+  Map<String, Boolean> raining = new LinkedHashMap<>();
+
+  @JsonProperty("errors")
+  Map<String, CityError> errors = new LinkedHashMap<>();
+
+  public Map<String, Boolean> getRaining() {
+    return raining;
+  }
+
+  public Map<String, CityError> getErrors() {
+    return errors;
+  }
+}
@@ -0,0 +1,66 @@
+package com.weatherapp.myweatherapp.model;
+
+/**
+ * Parses the times of day returned by Visual Crossing (e.g. "06:42:17") into seconds since midnight.
+ * The parser works on the characters directly, avoiding the LocalTime and Duration objects a java.time parse would create.
+ */
+public final class TimeOfDay {
+  //Marks a time that was not provided
+  public static final int MISSING = -1;
+
+  //Marks a time that was provided but could not be parsed
+  public static final int INVALID = -2;
+
+  private TimeOfDay() {}
+
+  /**
+   * Parses a time of day in the format HH:mm or HH:mm:ss, optionally followed by a fraction of a second which is ignored.
+   * 
+   * @param time The time of day, or null.
+   * @return The number of seconds since midnight, MISSING if the time is null or INVALID if it is not a valid time of day.
+   */
+  public static int parseSecondOfDay(String time) {
+    if (time == null) {
+      return MISSING;
+    }
+
+    int length = time.length();
+
+    if ((length != 5 && length < 8) || time.charAt(2) != ':') {
+      return INVALID;
+    }
+
+    int hours = twoDigits(time, 0);
+    int minutes = twoDigits(time, 3);
+    int seconds = 0;
+
+    if (length > 5) {
+      if (time.charAt(5) != ':' || (length > 8 && time.charAt(8) != '.')) {
+        return INVALID;
+      }
+      seconds = twoDigits(time, 6);
+    }
+
+    if (hours < 0 || hours > 23 || minutes < 0 || minutes > 59 || seconds < 0 || seconds > 59) {
+      return INVALID;
+    }
+
+    return hours * 3600 + minutes * 60 + seconds;
+  }
+
+  /**
+   * Reads the two digit number at the given position.
+   * 
+   * @return The number, or -1 if either character is not a digit.
+   */
+  private static int twoDigits(String time, int index) {
+    char tens = time.charAt(index);
+    char units = time.charAt(index + 1);
+
+    if (tens < '0' || tens > '9' || units < '0' || units > '9') {
+      return -1;
+    }
+
+    return (tens - '0') * 10 + (units - '0');
+  }
+}
@@ -0,0 +1,624 @@
+package com.weatherapp.myweatherapp.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.weatherapp.myweatherapp.model.CityInfo;
+
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory cache of the weather data retrieved from Visual Crossing.
+ * Entries expire after a configurable time to live and the least valuable entries are evicted (W-TinyLFU) once the maximum size is reached.
+ * An entry fetched with a wider query profile also serves requests for a narrower one.
+ * Once an entry is older than its time to live it is still served for a further stale window while it is refreshed in the background, so callers only wait for Visual Crossing on a real miss.
+ * Concurrent misses for the same key are coalesced so that only one of them calls Visual Crossing and the others wait for its result.
+ * Entries are keyed by the geohash cell of the coordinates Visual Crossing resolved the city to, and every name a cell was requested or resolved as is remembered as an alias of it.
+ * Differently written requests for the same place (e.g. "London", "london, uk" and "London, England, United Kingdom") therefore share one entry once each name has been seen.
+ * Each alias is still answered with the address it was requested as, through a copy of the shared entry that is kept as long as the entry, so it is serialized only once as well.
+ */
+@Component
+public class ForecastCache {
+  //Prefix of the keys of resolved locations, followed by the geohash of the cell
+  private static final String LOCATION_PREFIX = "geo:";
+  //How many names are remembered per cached entry on average
+  private static final int ALIASES_PER_ENTRY = 4;
+  //How many aliases of an entry get a kept copy, further ones get a new copy per request
+  private static final int ADDRESSES_PER_ENTRY = 16;
+  private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+  private static final Pattern COMMA = Pattern.compile(" ?, ?");
+  private static final Pattern SEPARATOR_ENDS = Pattern.compile("^[\\s,;]+|[\\s,;]+$");
+
+  private final Cache<CacheKey, CityInfo> cache;
+  //The resolved location of each normalized city name seen so far
+  private final Cache<String, String> aliases;
+  //Copies of the cached entries per address they were requested as, held as long as the entry itself
+  private final Cache<CityInfo, ConcurrentMap<String, CityInfo>> addressed;
+  //Loads currently in progress, shared by every caller asking for the same key
+  private final ConcurrentMap<CacheKey, CompletableFuture<CityInfo>> inFlight = new ConcurrentHashMap<>();
+  private final LongAdder coalescedCount = new LongAdder();
+  private final LongAdder staleCount = new LongAdder();
+  //How often each cached key was requested since the last refresh round, used to find the hot cities
+  private final ConcurrentMap<CacheKey, LongAdder> requestCounts = new ConcurrentHashMap<>();
+  private final Duration staleWindow;
+  private final Duration lifetime;
+  private final long maxEntries;
+  //Bounds the number of background refreshes running at the same time
+  private final Semaphore refreshPermits;
+  private final Executor refreshExecutor;
+  //Length of the geohash cells entries are keyed by, a value of 0 keys them by city name only
+  private final int geohashPrecision;
+
+  /**
+   * Creates a ForecastCache instance without a stale window, refreshing on the common pool and keying entries by geohash cells of about 1.2 km by 0.6 km.
+   * 
+   * @param ttlSeconds How long an entry stays fresh after it was fetched.
+   * @param maxEntries The maximum number of entries held, a value of 0 disables caching.
+   */
+  public ForecastCache(long ttlSeconds, long maxEntries) {
+    this(ttlSeconds, 0, maxEntries, 1, ForkJoinPool.commonPool(), 6);
+  }
+
+  /**
+   * Creates a ForecastCache instance.
+   * 
+   * @param ttlSeconds How long an entry stays fresh after it was fetched.
+   * @param staleSeconds How long an entry is still served after its time to live while it is being refreshed.
+   * @param maxEntries The maximum number of entries held, a value of 0 disables caching.
+   * @param refreshConcurrency The maximum number of background refreshes running at the same time.
+   * @param refreshExecutor Runs the background refreshes, a refresh it rejects is skipped.
+   * @param geohashPrecision The length of the geohash cells entries are keyed by, a value of 0 keys them by the normalized city name only.
+   */
+  @Autowired
+  public ForecastCache(@Value("${weather.cache.ttl-seconds}") long ttlSeconds, @Value("${weather.cache.stale-seconds}") long staleSeconds, @Value("${weather.cache.max-entries}") long maxEntries, @Value("${weather.refresh.concurrency}") int refreshConcurrency, ExecutorService refreshExecutor, @Value("${weather.cache.geohash-precision}") int geohashPrecision) {
+    this(ttlSeconds, staleSeconds, maxEntries, refreshConcurrency, (Executor) refreshExecutor, geohashPrecision);
+  }
+
+  private ForecastCache(long ttlSeconds, long staleSeconds, long maxEntries, int refreshConcurrency, Executor refreshExecutor, int geohashPrecision) {
+    this.staleWindow = Duration.ofSeconds(staleSeconds);
+    this.lifetime = Duration.ofSeconds(ttlSeconds).plus(staleWindow);
+    this.maxEntries = maxEntries;
+    this.refreshPermits = new Semaphore(refreshConcurrency);
+    this.refreshExecutor = refreshExecutor;
+    this.geohashPrecision = geohashPrecision;
+    this.aliases = Caffeine.newBuilder().maximumSize(maxEntries * ALIASES_PER_ENTRY).build();
+    this.addressed = Caffeine.newBuilder().weakKeys().maximumSize(maxEntries).build();
+    this.cache = Caffeine.newBuilder()
+      .expireAfter(expireAfterWrite(lifetime))
+      .maximumSize(maxEntries)
+      .recordStats()
+      .build();
+  }
+
+  /**
+   * Expires entries a fixed time after they were written, while still allowing restored entries to be given their remaining lifetime.
+   * 
+   * @param lifetime How long an entry is kept after it was written, including its stale window.
+   * @return The expiry policy.
+   */
+  private static Expiry<CacheKey, CityInfo> expireAfterWrite(Duration lifetime) {
+    long ttlNanos = lifetime.toNanos();
+
+    return new Expiry<>() {
+      @Override
+      public long expireAfterCreate(CacheKey key, CityInfo ci, long currentTime) {
+        return ttlNanos;
+      }
+
+      @Override
+      public long expireAfterUpdate(CacheKey key, CityInfo ci, long currentTime, long currentDuration) {
+        return ttlNanos;
+      }
+
+      @Override
+      public long expireAfterRead(CacheKey key, CityInfo ci, long currentTime, long currentDuration) {
+        return currentDuration;
+      }
+    };
+  }
+
+  /**
+   * Returns the cached weather data for the city or loads and caches it when it is absent or expired.
+   * If another caller is already loading the same key, this call waits for that load instead of starting a new one.
+   * Failed and empty loads are not cached, but their outcome is shared with the callers that were waiting on them.
+   * A stale entry is returned at once and refreshed in the background with the same loader.
+   * 
+   * @param city The name of the city.
+   * @param includeLangId specifies whether the weather data includes code names to describe weather conditions.
+   * @param profile The sections and elements of the timeline the caller needs.
+   * @param loader Fetches the weather data on a cache miss.
+   * @return The cached or freshly loaded CityInfo object, addressed as the tidied city name if it was loaded under another alias, or null if the loader returned null.
+   */
+  public CityInfo get(String city, boolean includeLangId, QueryProfile profile, Supplier<CityInfo> loader) {
+    return get(city, includeLangId, profile, loader, loader);
+  }
+
+  /**
+   * Returns the cached weather data for the city or loads and caches it when it is absent or expired, like get without a refresher.
+   * A stale entry is returned at once and refreshed in the background with the refresher, which is never run for a miss.
+   * 
+   * @param city The name of the city.
+   * @param includeLangId specifies whether the weather data includes code names to describe weather conditions.
+   * @param profile The sections and elements of the timeline the caller needs.
+   * @param loader Fetches the weather data on a cache miss, on the calling thread.
+   * @param refresher Fetches the weather data of a stale entry on the refresh executor, e.g. with background priority.
+   * @return The cached or freshly loaded CityInfo object, addressed as the tidied city name if it was loaded under another alias, or null if the loader returned null.
+   */
+  public CityInfo get(String city, boolean includeLangId, QueryProfile profile, Supplier<CityInfo> loader, Supplier<CityInfo> refresher) {
+    String address = tidy(city);
+    String name = address.toLowerCase(Locale.ROOT);
+    CacheKey key = keyOf(name, includeLangId, profile);
+    CityInfo ci = lookup(key, () -> refresh(key, refresher));
+
+    if (ci != null) {
+      return addressedAs(ci, address);
+    }
+
+    CompletableFuture<CityInfo> load = new CompletableFuture<>();
+    CompletableFuture<CityInfo> existing = inFlight.putIfAbsent(key, load);
+
+    if (existing != null) {
+      coalescedCount.increment();
+      return addressedAs(await(existing), address);
+    }
+
+    try {
+      //Another load may have completed between the cache lookup and claiming the key
+      ci = cache.policy().getIfPresentQuietly(keyOf(name, includeLangId, profile));
+
+      if (ci == null) {
+        ci = loader.get();
+
+        if (ci != null) {
+          cache.put(resolve(key, ci), ci);
+        }
+      }
+
+      load.complete(ci);
+      return addressedAs(ci, address);
+    } catch (RuntimeException | Error e) {
+      load.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(key, load);
+    }
+  }
+
+  /**
+   * Returns the cached weather data for the city or loads it without blocking when it is absent or expired.
+   * Loads are shared with get, so blocking and non-blocking callers for the same key are coalesced together.
+   * A stale entry is returned at once and refreshed in the background with the same loader.
+   * 
+   * @param city The name of the city.
+   * @param includeLangId specifies whether the weather data includes code names to describe weather conditions.
+   * @param profile The sections and elements of the timeline the caller needs.
+   * @param loader Starts fetching the weather data on a cache miss.
+   * @return A future completing with the cached or freshly loaded CityInfo object, addressed like the one of get, or with null if the loader returned null.
+   */
+  public CompletableFuture<CityInfo> getAsync(String city, boolean includeLangId, QueryProfile profile, Supplier<CompletableFuture<CityInfo>> loader) {
+    return getAsync(city, includeLangId, profile, loader, key -> startRefresh(key, loader));
+  }
+
+  /**
+   * Returns the cached weather data for the city or loads it without blocking when it is absent or expired, like getAsync without a refresher.
+   * A stale entry is returned at once and refreshed in the background with the refresher, like the one of get.
+   * 
+   * @param city The name of the city.
+   * @param includeLangId specifies whether the weather data includes code names to describe weather conditions.
+   * @param profile The sections and elements of the timeline the caller needs.
+   * @param loader Starts fetching the weather data on a cache miss.
+   * @param refresher Fetches the weather data of a stale entry on the refresh executor, e.g. with background priority.
+   * @return A future completing with the cached or freshly loaded CityInfo object, addressed like the one of get, or with null if the loader returned null.
+   */
+  public CompletableFuture<CityInfo> getAsync(String city, boolean includeLangId, QueryProfile profile, Supplier<CompletableFuture<CityInfo>> loader, Supplier<CityInfo> refresher) {
+    return getAsync(city, includeLangId, profile, loader, key -> refresh(key, refresher));
+  }
+
+  private CompletableFuture<CityInfo> getAsync(String city, boolean includeLangId, QueryProfile profile, Supplier<CompletableFuture<CityInfo>> loader, Predicate<CacheKey> refresh) {
+    String address = tidy(city);
+    String name = address.toLowerCase(Locale.ROOT);
+    CacheKey key = keyOf(name, includeLangId, profile);
+    CityInfo ci = lookup(key, () -> refresh.test(key));
+
+    if (ci != null) {
+      return CompletableFuture.completedFuture(addressedAs(ci, address));
+    }
+
+    CompletableFuture<CityInfo> load = new CompletableFuture<>();
+    CompletableFuture<CityInfo> existing = inFlight.putIfAbsent(key, load);
+
+    if (existing != null) {
+      coalescedCount.increment();
+      //Hand out a copy so that a caller cancelling its future does not cancel the shared load
+      return existing.thenApply(result -> addressedAs(result, address));
+    }
+
+    CompletableFuture<CityInfo> source;
+    try {
+      ci = cache.policy().getIfPresentQuietly(keyOf(name, includeLangId, profile));
+      source = ci != null ? CompletableFuture.completedFuture(ci) : loader.get();
+    } catch (RuntimeException | Error e) {
+      source = CompletableFuture.failedFuture(e);
+    }
+
+    source.whenComplete((result, e) -> {
+      if (e == null && result != null) {
+        cache.put(resolve(key, result), result);
+      }
+      inFlight.remove(key, load);
+
+      if (e != null) {
+        load.completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+      } else {
+        load.complete(result);
+      }
+    });
+
+    return load.thenApply(result -> addressedAs(result, address));
+  }
+
+  /**
+   * Refreshes the entry for the key in the background unless it is already being loaded, the refresh concurrency is exhausted or the refresh executor rejects it.
+   * The current entry keeps being served until the refresh succeeds, and a failed refresh leaves it in place.
+   * 
+   * @param city The name of the city.
+   * @param includeLangId specifies whether the weather data includes code names to describe weather conditions.
+   * @param profile The sections and elements of the timeline to refresh.
+   * @param loader Fetches the weather data.
+   * @return A boolean stating whether a refresh was started.
+   */
+  public boolean refresh(String city, boolean includeLangId, QueryProfile profile, Supplier<CityInfo> loader) {
+    return refresh(keyOf(normalize(city), includeLangId, profile), loader);
+  }
+
+  private boolean refresh(CacheKey key, Supplier<CityInfo> loader) {
+    return startRefresh(key, () -> CompletableFuture.supplyAsync(loader, refreshExecutor));
+  }
+
+  /**
+   * Starts a background load of the key that waiting callers can join, holding a refresh permit until it completes.
+   * 
+   * @param key The key to refresh.
+   * @param loader Starts fetching the weather data.
+   * @return A boolean stating whether a refresh was started.
+   */
+  private boolean startRefresh(CacheKey key, Supplier<CompletableFuture<CityInfo>> loader) {
+    if (inFlight.containsKey(key) || !refreshPermits.tryAcquire()) {
+      return false;
+    }
+
+    CompletableFuture<CityInfo> load = new CompletableFuture<>();
+
+    if (inFlight.putIfAbsent(key, load) != null) {
+      refreshPermits.release();
+      return false;
+    }
+
+    CompletableFuture<CityInfo> source;
+    try {
+      source = loader.get();
+    } catch (RuntimeException | Error e) {
+      source = CompletableFuture.failedFuture(e);
+    }
+
+    source.whenComplete((result, e) -> {
+      if (e == null && result != null) {
+        cache.put(resolve(key, result), result);
+      }
+      inFlight.remove(key, load);
+      refreshPermits.release();
+
+      if (e != null) {
+        load.completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+      } else {
+        load.complete(result);
+      }
+    });
+
+    return true;
+  }
+
+  /**
+   * Puts weather data fetched earlier, e.g. by a previous run of the application, back into the cache for the rest of its lifetime.
+   * An entry already cached for the key is kept, since it is at least as recent.
+   * The aliases of the location are learned again from the data, so they survive a restart as well.
+   * 
+   * @param city The name of the city.
+   * @param includeLangId specifies whether the weather data includes code names to describe weather conditions.
+   * @param profile The sections and elements of the timeline the data was fetched with.
+   * @param ci The weather data.
+   * @param remaining How much longer the data is kept, including its stale window.
+   */
+  public void restore(String city, boolean includeLangId, QueryProfile profile, CityInfo ci, Duration remaining) {
+    if (ci != null && !remaining.isNegative() && !remaining.isZero()) {
+      CacheKey key = resolve(keyOf(normalize(city), includeLangId, profile), ci);
+      cache.policy().expireVariably().ifPresent(expiry -> expiry.putIfAbsent(key, ci, remaining));
+    }
+  }
+
+  /**
+   * Returns the weather data with the requested address, which differs from the cached one when the entry was loaded under another alias.
+   * Names only differing in case share the entry as they are, like they share its key.
+   * The copy for an address is kept as long as the entry, so repeat requests get the same object and its serialized body is cached too.
+   * 
+   * @param ci The cached weather data, or null.
+   * @param address The tidied city name as requested.
+   * @return The cached CityInfo object if it has no address or its address matches, a copy with the requested address otherwise, or null.
+   */
+  private CityInfo addressedAs(CityInfo ci, String address) {
+    if (ci == null || ci.getAddress() == null || address.equalsIgnoreCase(ci.getAddress())) {
+      return ci;
+    }
+
+    ConcurrentMap<String, CityInfo> copies = addressed.get(ci, entry -> new ConcurrentHashMap<>());
+    CityInfo copy = copies.get(address);
+
+    if (copy == null) {
+      copy = ci.withAddress(address);
+
+      if (copies.size() < ADDRESSES_PER_ENTRY) {
+        CityInfo existing = copies.putIfAbsent(address, copy);
+        copy = existing != null ? existing : copy;
+      }
+    }
+
+    return copy;
+  }
+
+  /**
+   * Looks up the entry for the key, falling back to an entry of a profile covering the requested one.
+   * The request is counted towards the popularity of the key, and a stale entry triggers the given refresh.
+   * 
+   * @param key The requested key.
+   * @param refresh Starts refreshing the requested key.
+   * @return The cached CityInfo object, or null if no cached entry can serve the key.
+   */
+  private CityInfo lookup(CacheKey key, Runnable refresh) {
+    countRequest(key);
+
+    CacheKey found = key;
+    CityInfo ci = cache.getIfPresent(key);
+
+    for (QueryProfile profile : QueryProfile.values()) {
+      if (ci != null) {
+        break;
+      } else if (profile != key.profile() && profile.covers(key.profile())) {
+        found = new CacheKey(key.city(), key.includeLangId(), profile);
+        ci = cache.policy().getIfPresentQuietly(found);
+      }
+    }
+
+    if (ci != null && isStale(found)) {
+      staleCount.increment();
+      refresh.run();
+    }
+
+    return ci;
+  }
+
+  /**
+   * Checks whether the entry is past its time to live and only served within its stale window.
+   */
+  private boolean isStale(CacheKey key) {
+    return !staleWindow.isZero() && remainingLifetime(key).compareTo(staleWindow) <= 0;
+  }
+
+  private Duration remainingLifetime(CacheKey key) {
+    return cache.policy().expireVariably().flatMap(expiry -> expiry.getExpiresAfter(key)).orElse(Duration.ZERO);
+  }
+
+  /**
+   * Counts a request for the key, ignoring new keys once as many keys are counted as the cache can hold.
+   */
+  private void countRequest(CacheKey key) {
+    LongAdder count = requestCounts.get(key);
+
+    if (count == null && requestCounts.size() < maxEntries) {
+      count = requestCounts.computeIfAbsent(key, k -> new LongAdder());
+    }
+    if (count != null) {
+      count.increment();
+    }
+  }
+
+  /**
+   * Finds the most requested cached keys that expire within the given time, so they can be refreshed before any caller finds them stale.
+   * Counts of keys that are no longer cached are dropped and the others are halved, so the popularity follows recent traffic.
+   * 
+   * @param limit The maximum number of keys returned.
+   * @param ahead How long before the end of its time to live an entry becomes due for a refresh.
+   * @return The keys due for a refresh, most requested first.
+   */
+  List<CacheKey> hottestExpiring(int limit, Duration ahead) {
+    Map<CacheKey, Long> counts = new HashMap<>();
+
+    requestCounts.entrySet().removeIf(entry -> {
+      if (cache.policy().getIfPresentQuietly(entry.getKey()) == null) {
+        return true;
+      }
+
+      long count = entry.getValue().sumThenReset();
+      entry.getValue().add(count / 2);
+      counts.put(entry.getKey(), count);
+      return false;
+    });
+
+    Duration due = staleWindow.plus(ahead);
+
+    return counts.entrySet().stream()
+      .filter(entry -> entry.getValue() > 0 && remainingLifetime(entry.getKey()).compareTo(due) <= 0)
+      .sorted(Map.Entry.<CacheKey, Long>comparingByValue().reversed())
+      .limit(limit)
+      .map(Map.Entry::getKey)
+      .toList();
+  }
+
+  /**
+   * Waits for a load started by another caller and returns its outcome as if this caller had loaded it.
+   * 
+   * @param load The in-flight load.
+   * @return The loaded CityInfo object.
+   */
+  private static CityInfo await(CompletableFuture<CityInfo> load) {
+    try {
+      return load.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException re) {
+        throw re;
+      } else if (e.getCause() instanceof Error err) {
+        throw err;
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Accesses the hit, miss and eviction counters of the cache.
+   * 
+   * @return A snapshot of the cache statistics.
+   */
+  public CacheStats stats() {
+    return cache.stats();
+  }
+
+  /**
+   * Accesses the number of callers that waited on another caller's load instead of calling Visual Crossing themselves.
+   * 
+   * @return The number of coalesced calls.
+   */
+  public long coalescedCount() {
+    return coalescedCount.sum();
+  }
+
+  /**
+   * Accesses the number of requests answered with a stale entry while it was refreshed.
+   * 
+   * @return The number of stale hits.
+   */
+  public long staleCount() {
+    return staleCount.sum();
+  }
+
+  /**
+   * Accesses how long an entry is kept after it was fetched, including its stale window.
+   * 
+   * @return The lifetime of an entry.
+   */
+  public Duration lifetime() {
+    return lifetime;
+  }
+
+  /**
+   * Accesses the number of loads currently in progress.
+   * 
+   * @return The number of in-flight loads.
+   */
+  public int inFlightCount() {
+    return inFlight.size();
+  }
+
+  /**
+   * Accesses the number of cached entries.
+   * 
+   * @return The approximate number of entries.
+   */
+  public long size() {
+    return cache.estimatedSize();
+  }
+
+  /**
+   * Finds the name a cached entry was fetched with, so that it can be fetched again for a refresh.
+   * 
+   * @param key A cached key.
+   * @return The address of the cached weather data, or the city of the key if it is not cached or has no address.
+   */
+  String queryName(CacheKey key) {
+    CityInfo ci = cache.policy().getIfPresentQuietly(key);
+
+    return ci != null && ci.getAddress() != null ? ci.getAddress() : key.city();
+  }
+
+  /**
+   * Builds the key of a normalized city name, which is its resolved location once one is known and the name itself before.
+   */
+  private CacheKey keyOf(String name, boolean includeLangId, QueryProfile profile) {
+    String location = aliases.getIfPresent(name);
+
+    return new CacheKey(location != null ? location : name, includeLangId, profile);
+  }
+
+  /**
+   * Learns the location of freshly loaded weather data as an alias of the requested name, its address and its resolved address.
+   * 
+   * @param key The key the data was requested with.
+   * @param ci The loaded weather data.
+   * @return The key the data is cached under, which is the key of its location or the requested key if it has no coordinates.
+   */
+  private CacheKey resolve(CacheKey key, CityInfo ci) {
+    if (geohashPrecision <= 0 || ci.getLatitude() == null || ci.getLongitude() == null) {
+      return key;
+    }
+
+    String location = LOCATION_PREFIX + Geohash.encode(ci.getLatitude(), ci.getLongitude(), geohashPrecision);
+
+    if (!key.city().startsWith(LOCATION_PREFIX)) {
+      aliases.put(key.city(), location);
+    }
+    for (String name : new String[] {ci.getAddress(), ci.getResolvedAddress()}) {
+      if (name != null && !name.isBlank()) {
+        aliases.put(normalize(name), location);
+      }
+    }
+
+    return new CacheKey(location, key.includeLangId(), key.profile());
+  }
+
+  /**
+   * Normalizes a city name so that differently spelled requests for the same city share an entry.
+   * 
+   * @param city The city name as requested.
+   * @return The tidied, lower-cased city name.
+   */
+  static String normalize(String city) {
+    return tidy(city).toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Cleans up a city name as it would be sent to Visual Crossing, keeping its case.
+   * The name is taken as already decoded from the request path, so it is never decoded again; compatibility characters are folded (NFKC), runs of whitespace become a single space, spaces around commas are removed and leading and trailing separators are stripped.
+   * 
+   * @param city The city name as requested.
+   * @return The cleaned up city name.
+   */
+  static String tidy(String city) {
+    String name = Normalizer.normalize(city, Normalizer.Form.NFKC);
+    name = WHITESPACE.matcher(name).replaceAll(" ");
+    name = COMMA.matcher(name).replaceAll(",");
+
+    return SEPARATOR_ENDS.matcher(name).replaceAll("");
+  }
+
+  record CacheKey(String city, boolean includeLangId, QueryProfile profile) {}
+}
@@ -0,0 +1,59 @@
+package com.weatherapp.myweatherapp.repository;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Proactively refreshes the most requested cities shortly before their cached weather data expires.
+ * Hot cities are therefore refreshed in the background instead of being found stale or missing by a caller.
+ */
+@Component
+public class ForecastRefresher {
+  private final ForecastCache forecastCache;
+  private final VisualcrossingRepository weatherRepo;
+  //Maximum number of cities refreshed per round
+  private final int topN;
+  //How long before the end of its time to live a hot entry is refreshed
+  private final Duration refreshAhead;
+
+  /**
+   * Creates a ForecastRefresher instance.
+   * 
+   * @param forecastCache Tracks how often each city is requested and when it expires.
+   * @param weatherRepo Refreshes the weather data of a city.
+   * @param topN The maximum number of cities refreshed per round, a value of 0 disables the proactive refresh.
+   * @param refreshAheadSeconds How long before the end of its time to live a hot entry is refreshed.
+   */
+  public ForecastRefresher(ForecastCache forecastCache, VisualcrossingRepository weatherRepo, @Value("${weather.refresh.top-n}") int topN, @Value("${weather.refresh.ahead-seconds}") long refreshAheadSeconds) {
+    this.forecastCache = forecastCache;
+    this.weatherRepo = weatherRepo;
+    this.topN = topN;
+    this.refreshAhead = Duration.ofSeconds(refreshAheadSeconds);
+  }
+
+  /**
+   * Starts a background refresh for each of the most requested cities that expire soon.
+   * Refreshes beyond the refresh concurrency are skipped and picked up again in the next round.
+   * 
+   * @return The number of refreshes started.
+   */
+  @Scheduled(fixedDelayString = "${weather.refresh.interval-ms}", initialDelayString = "${weather.refresh.interval-ms}")
+  public int refreshHotCities() {
+    if (topN <= 0) {
+      return 0;
+    }
+
+    int started = 0;
+
+    for (ForecastCache.CacheKey key : forecastCache.hottestExpiring(topN, refreshAhead)) {
+      if (weatherRepo.refresh(forecastCache.queryName(key), key.includeLangId(), key.profile())) {
+        started++;
+      }
+    }
+
+    return started;
+  }
+}
@@ -0,0 +1,359 @@
+package com.weatherapp.myweatherapp.repository;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.weatherapp.myweatherapp.model.CityInfo;
+import com.weatherapp.myweatherapp.model.CityInfoReader;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Optional local persistence tier keeping the recently fetched weather data across restarts.
+ * Every fetch is appended to a JSON lines file together with the time it was fetched, and on startup the entries that can still be served are put back into the ForecastCache.
+ * The file is compacted to the latest fresh entry of each key on startup and whenever enough lines were appended since the last compaction.
+ * All file access happens on a single writer thread which keeps the file open between appends, so neither blocking nor reactive callers ever wait for the disk or for each other.
+ */
+@Component
+public class ForecastStore {
+  private static final Logger log = LoggerFactory.getLogger(ForecastStore.class);
+  //Bounds the forecasts waiting to be written, further ones are dropped
+  private static final int QUEUE_CAPACITY = 10_000;
+
+  private final ForecastCache forecastCache;
+  //Writes only the bound fields of CityInfo, not the values derived from them
+  private final ObjectMapper storeMapper;
+  private final boolean enabled;
+  private final Path path;
+  //How long an entry can still be served after it was fetched, including the stale window of the cache
+  private final long lifetimeMillis;
+  private final int compactAfter;
+  //Single thread doing all the file access, null when the store is disabled
+  private final ThreadPoolExecutor writer;
+  //The file opened for appending, only used by the writer thread
+  private BufferedWriter out;
+  //Lines appended since the file was last compacted, only used by the writer thread
+  private int appendedLines;
+
+  /**
+   * Creates a ForecastStore instance.
+   *
+   * @param forecastCache The cache warmed with the stored entries on startup.
+   * @param objectMapper The JSON mapper configured by Spring Boot.
+   * @param enabled specifies whether fetched weather data is persisted and reloaded.
+   * @param path The file holding the stored entries.
+   * @param compactAfter The number of appended lines after which the file is compacted.
+   */
+  public ForecastStore(ForecastCache forecastCache, ObjectMapper objectMapper, @Value("${weather.store.enabled}") boolean enabled, @Value("${weather.store.path}") String path, @Value("${weather.store.compact-after}") int compactAfter) {
+    this.forecastCache = forecastCache;
+    this.storeMapper = objectMapper.copy()
+      .setVisibility(PropertyAccessor.GETTER, JsonAutoDetect.Visibility.NONE)
+      .setVisibility(PropertyAccessor.IS_GETTER, JsonAutoDetect.Visibility.NONE);
+    this.enabled = enabled;
+    this.path = Path.of(path);
+    this.lifetimeMillis = forecastCache.lifetime().toMillis();
+    this.compactAfter = compactAfter;
+    this.writer = enabled ? new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(QUEUE_CAPACITY), runnable -> {
+      Thread thread = new Thread(runnable, "weather-store-writer");
+      thread.setDaemon(true);
+      return thread;
+    }) : null;
+  }
+
+  /**
+   * Reloads the entries that can still be served into the cache and compacts the file.
+   * A missing file is a cold start and an unreadable line is skipped, so a damaged store never prevents the application from starting.
+   *
+   * @return The number of entries put back into the cache.
+   */
+  @PostConstruct
+  public int load() {
+    if (!enabled || !Files.exists(path)) {
+      return 0;
+    }
+
+    return onWriter(() -> {
+      closeOutput();
+      long now = System.currentTimeMillis();
+      Map<ForecastCache.CacheKey, StoredForecast> latest = readLatest(now);
+
+      latest.forEach((key, stored) -> forecastCache.restore(key.city(), key.includeLangId(), key.profile(), stored.data(), Duration.ofMillis(stored.fetchedAt() + lifetimeMillis - now)));
+      rewrite(latest);
+      log.info("Restored {} forecasts from {}", latest.size(), path);
+
+      return latest.size();
+    });
+  }
+
+  /**
+   * Queues freshly fetched weather data to be appended to the store by the writer thread, without waiting for it to be written.
+   * A failure to write is logged and otherwise ignored, and data arriving while the queue is full is dropped, since the store only saves upstream calls after a restart.
+   *
+   * @param city The name of the city.
+   * @param includeLangId specifies whether the weather data includes code names to describe weather conditions.
+   * @param profile The sections and elements of the timeline the data was fetched with.
+   * @param ci The weather data, nothing is stored if it is null.
+   */
+  public void append(String city, boolean includeLangId, QueryProfile profile, CityInfo ci) {
+    if (!enabled || ci == null) {
+      return;
+    }
+
+    long fetchedAt = ci.getFetchedAt() > 0 ? ci.getFetchedAt() : System.currentTimeMillis();
+    ForecastCache.CacheKey key = new ForecastCache.CacheKey(ForecastCache.normalize(city), includeLangId, profile);
+
+    try {
+      writer.execute(() -> write(key, new StoredForecast(fetchedAt, ci)));
+    } catch (RejectedExecutionException e) {
+      log.warn("Dropping the forecast for {}, {} forecasts are already waiting to be stored in {}", city, QUEUE_CAPACITY, path);
+    }
+  }
+
+  /**
+   * Waits until every forecast appended so far is written to the file.
+   */
+  public void flush() {
+    if (!enabled) {
+      return;
+    }
+
+    onWriter(() -> {
+      if (out != null) {
+        try {
+          out.flush();
+        } catch (IOException e) {
+          log.warn("Could not flush the forecast store {}", path, e);
+          closeOutput();
+        }
+      }
+      return null;
+    });
+  }
+
+  /**
+   * Writes the forecasts still queued and closes the file when the application shuts down.
+   *
+   * @throws InterruptedException If interrupted while waiting for the queued forecasts to be written.
+   */
+  @PreDestroy
+  public void close() throws InterruptedException {
+    if (!enabled) {
+      return;
+    }
+
+    writer.shutdown();
+    if (!writer.awaitTermination(10, TimeUnit.SECONDS)) {
+      log.warn("Gave up writing {} queued forecasts to {}", writer.getQueue().size(), path);
+      writer.shutdownNow();
+    }
+    closeOutput();
+  }
+
+  /**
+   * Appends one entry to the file, opening it on first use, and compacts the file once enough lines were appended.
+   * The file is flushed whenever no further entry is waiting, so a burst of appends shares one write to the disk.
+   */
+  private void write(ForecastCache.CacheKey key, StoredForecast stored) {
+    try {
+      if (out == null) {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        out = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+      }
+
+      out.write(toLine(key, stored));
+      out.newLine();
+
+      if (++appendedLines >= compactAfter) {
+        closeOutput();
+        rewrite(readLatest(System.currentTimeMillis()));
+      } else if (writer.getQueue().isEmpty()) {
+        out.flush();
+      }
+    } catch (IOException | UncheckedIOException e) {
+      log.warn("Could not store the forecast for {} in {}", key.city(), path, e);
+      closeOutput();
+    }
+  }
+
+  /**
+   * Flushes and closes the file opened for appending, if any.
+   */
+  private void closeOutput() {
+    if (out == null) {
+      return;
+    }
+
+    try {
+      out.close();
+    } catch (IOException e) {
+      log.warn("Could not close the forecast store {}", path, e);
+    }
+    out = null;
+  }
+
+  /**
+   * Runs the task on the writer thread and waits for its result.
+   */
+  private <T> T onWriter(Callable<T> task) {
+    try {
+      return writer.submit(task).get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException re) {
+        throw re;
+      }
+      throw new IllegalStateException(e.getCause());
+    } catch (RejectedExecutionException e) {
+      throw new IllegalStateException("The forecast store is shut down or its queue is full");
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for the forecast store");
+    }
+  }
+
+  /**
+   * Reads the file and keeps the latest entry of each key that is still fresh.
+   */
+  private Map<ForecastCache.CacheKey, StoredForecast> readLatest(long now) {
+    Map<ForecastCache.CacheKey, StoredForecast> latest = new LinkedHashMap<>();
+
+    try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+      String line;
+
+      while ((line = reader.readLine()) != null) {
+        try {
+          readLine(line, latest, now);
+        } catch (IOException | RuntimeException e) {
+          log.warn("Skipping an unreadable line in {}: {}", path, e.getMessage());
+        }
+      }
+    } catch (IOException e) {
+      log.warn("Could not read the forecast store {}", path, e);
+    }
+
+    return latest;
+  }
+
+  /**
+   * Parses one line and records it if it is fresh and more recent than the entry already read for its key.
+   */
+  private void readLine(String line, Map<ForecastCache.CacheKey, StoredForecast> latest, long now) throws IOException {
+    if (line.isBlank()) {
+      return;
+    }
+
+    String city = null;
+    boolean includeLangId = false;
+    QueryProfile profile = QueryProfile.FULL;
+    long fetchedAt = 0;
+    CityInfo data = null;
+
+    try (JsonParser parser = storeMapper.createParser(line)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new IOException("Expected a JSON object");
+      }
+
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+
+        switch (field) {
+          case "city" -> city = parser.nextTextValue();
+          case "includeLangId" -> includeLangId = parser.nextBooleanValue();
+          case "profile" -> profile = QueryProfile.valueOf(parser.nextTextValue());
+          case "fetchedAt" -> fetchedAt = parser.nextLongValue(0);
+          case "data" -> data = CityInfoReader.read(parser);
+          default -> {
+            parser.nextToken();
+            parser.skipChildren();
+          }
+        }
+      }
+    }
+
+    if (city == null || data == null || fetchedAt + lifetimeMillis <= now) {
+      return;
+    }
+
+    ForecastCache.CacheKey key = new ForecastCache.CacheKey(city, includeLangId, profile);
+    StoredForecast previous = latest.get(key);
+
+    if (previous == null || previous.fetchedAt() <= fetchedAt) {
+      data.setFetchedAt(fetchedAt);
+      latest.put(key, new StoredForecast(fetchedAt, data));
+    }
+  }
+
+  /**
+   * Replaces the file with the given entries, writing to a temporary file first so a crash never leaves a truncated store behind.
+   */
+  private void rewrite(Map<ForecastCache.CacheKey, StoredForecast> entries) {
+    Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+
+    try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+      for (Map.Entry<ForecastCache.CacheKey, StoredForecast> entry : entries.entrySet()) {
+        writer.write(toLine(entry.getKey(), entry.getValue()));
+        writer.newLine();
+      }
+    } catch (IOException e) {
+      log.warn("Could not compact the forecast store {}", path, e);
+      return;
+    }
+
+    try {
+      Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      appendedLines = 0;
+    } catch (IOException e) {
+      log.warn("Could not compact the forecast store {}", path, e);
+    }
+  }
+
+  /**
+   * Serializes one entry as a single JSON line.
+   */
+  private String toLine(ForecastCache.CacheKey key, StoredForecast stored) throws IOException {
+    StringWriter line = new StringWriter();
+
+    try (JsonGenerator generator = storeMapper.createGenerator(line)) {
+      generator.writeStartObject();
+      generator.writeStringField("city", key.city());
+      generator.writeBooleanField("includeLangId", key.includeLangId());
+      generator.writeStringField("profile", key.profile().name());
+      generator.writeNumberField("fetchedAt", stored.fetchedAt());
+      generator.writeFieldName("data");
+      storeMapper.writeValue(generator, stored.data());
+      generator.writeEndObject();
+    }
+
+    return line.toString();
+  }
+
+  private record StoredForecast(long fetchedAt, CityInfo data) {}
+}
@@ -0,0 +1,60 @@
+package com.weatherapp.myweatherapp.repository;
+
+/**
+ * Encodes coordinates as geohashes, so that places within the same cell share one string key.
+ * Each extra character narrows the cell by a factor of 32, e.g. 5 characters are about 4.9 km by 4.9 km and 6 characters about 1.2 km by 0.6 km.
+ */
+final class Geohash {
+  private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+
+  private Geohash() {}
+
+  /**
+   * Encodes the coordinates as a geohash of the given length.
+   *
+   * @param latitude The latitude in degrees, between -90 and 90.
+   * @param longitude The longitude in degrees, between -180 and 180.
+   * @param precision The number of characters of the geohash.
+   * @return The geohash of the cell containing the coordinates.
+   */
+  static String encode(double latitude, double longitude, int precision) {
+    double minLat = -90, maxLat = 90;
+    double minLon = -180, maxLon = 180;
+    StringBuilder hash = new StringBuilder(precision);
+    boolean evenBit = true;
+    int bit = 0;
+    int index = 0;
+
+    while (hash.length() < precision) {
+      //Bits alternate between longitude and latitude, starting with longitude
+      if (evenBit) {
+        double mid = (minLon + maxLon) / 2;
+        if (longitude >= mid) {
+          index = (index << 1) | 1;
+          minLon = mid;
+        } else {
+          index = index << 1;
+          maxLon = mid;
+        }
+      } else {
+        double mid = (minLat + maxLat) / 2;
+        if (latitude >= mid) {
+          index = (index << 1) | 1;
+          minLat = mid;
+        } else {
+          index = index << 1;
+          maxLat = mid;
+        }
+      }
+      evenBit = !evenBit;
+
+      if (++bit == 5) {
+        hash.append(BASE32[index]);
+        bit = 0;
+        index = 0;
+      }
+    }
+
+    return hash.toString();
+  }
+}
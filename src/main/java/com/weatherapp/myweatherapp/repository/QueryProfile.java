@@ -0,0 +1,55 @@
+package com.weatherapp.myweatherapp.repository;
+
+/**
+ * Sections and elements of the Visual Crossing timeline requested for a use case.
+ * Restricting the query shrinks the response, which lowers the upstream latency and the time spent parsing it.
+ */
+public enum QueryProfile {
+  //The whole timeline, used by the forecast endpoints which return the daily data
+  FULL(null, null, 15),
+  //Only the current conditions used to compare daylight and check for rain
+  CURRENT("current", "datetime,sunrise,sunset,conditions", 1);
+
+  private final String include;
+  private final String elements;
+  //Visual Crossing bills one record per day of the timeline, the default timeline spans 15 days
+  private final int recordCost;
+
+  QueryProfile(String include, String elements, int recordCost) {
+    this.include = include;
+    this.elements = elements;
+    this.recordCost = recordCost;
+  }
+
+  /**
+   * Accesses the number of records Visual Crossing bills against the daily quota for a request with this profile.
+   * 
+   * @return The record cost.
+   */
+  public int recordCost() {
+    return recordCost;
+  }
+
+  /**
+   * Builds the query parameters restricting the timeline to this profile.
+   * 
+   * @return The query parameters starting with an ampersand, or an empty string if nothing is restricted.
+   */
+  public String queryParameters() {
+    if (include == null) {
+      return "";
+    }
+
+    return "&include=" + include + "&elements=" + elements;
+  }
+
+  /**
+   * Checks whether data fetched with this profile contains everything the other profile asks for, so that it can be served from the same cache entry.
+   * 
+   * @param other The requested profile.
+   * @return A boolean stating whether this profile covers the other.
+   */
+  public boolean covers(QueryProfile other) {
+    return this == FULL || this == other;
+  }
+}
@@ -0,0 +1,176 @@
+package com.weatherapp.myweatherapp.repository;
+
+import com.weatherapp.myweatherapp.model.QuotaStatus;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+
+/**
+ * Client-side rate limiter and quota accounting for the Visual Crossing API key.
+ * A token bucket smooths bursts of upstream requests to the configured rate, and the records billed by Visual Crossing are counted against the daily quota.
+ * Interactive requests may wait briefly for a token, while background refreshes are shed at once and stop early so that part of the quota is kept for interactive requests.
+ * Shed requests fail with a 429 HttpClientErrorException carrying a Retry-After header.
+ */
+@Component
+public class QuotaLimiter {
+  /**
+   * How urgently a request to Visual Crossing is needed.
+   */
+  public enum Priority {
+    //A caller is waiting for the response
+    INTERACTIVE,
+    //A refresh ahead of expiry that may be skipped
+    BACKGROUND
+  }
+
+  private final double tokensPerNano;
+  private final double burst;
+  private final long maxWaitNanos;
+  private final long dailyRecords;
+  //Records of the daily quota background refreshes may not use
+  private final long reservedRecords;
+  private double tokens;
+  private long refilledAt;
+  //Set when Visual Crossing answered 429, no request is made before this time
+  private long pausedUntil;
+  private LocalDate day;
+  private long consumedRecords;
+  private long allowedRequests;
+  private long shedRequests;
+
+  /**
+   * Creates a QuotaLimiter instance.
+   *
+   * @param ratePerSecond The sustained number of upstream requests per second.
+   * @param burst The number of upstream requests that may be made at once after a quiet period.
+   * @param maxWaitMs The maximum time an interactive request waits for a token before it is shed.
+   * @param dailyRecords The number of records the API key may consume per day (UTC).
+   * @param backgroundReservePercent The percentage of the daily records kept for interactive requests.
+   */
+  public QuotaLimiter(@Value("${weather.quota.rate-per-second}") double ratePerSecond, @Value("${weather.quota.burst}") int burst, @Value("${weather.quota.max-wait-ms}") long maxWaitMs, @Value("${weather.quota.daily-records}") long dailyRecords, @Value("${weather.quota.background-reserve-percent}") int backgroundReservePercent) {
+    this.tokensPerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+    this.burst = burst;
+    this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+    this.dailyRecords = dailyRecords;
+    this.reservedRecords = dailyRecords * backgroundReservePercent / 100;
+    this.tokens = burst;
+    this.refilledAt = System.nanoTime();
+    this.day = LocalDate.now(ZoneOffset.UTC);
+  }
+
+  /**
+   * Reserves a token and the records of one upstream request.
+   * The token may be taken ahead of time, in which case the caller has to wait the returned time before making the request.
+   *
+   * @param priority How urgently the request is needed.
+   * @param records The records Visual Crossing bills for the request.
+   * @return The time to wait before making the request, 0 if it can be made at once.
+   * @throws HttpClientErrorException With status 429 if the request is shed.
+   */
+  public synchronized Duration reserve(Priority priority, int records) {
+    long now = System.nanoTime();
+    refill(now);
+
+    long recordLimit = priority == Priority.BACKGROUND ? dailyRecords - reservedRecords : dailyRecords;
+
+    if (consumedRecords + records > recordLimit) {
+      throw shed("The daily Visual Crossing quota is exhausted", secondsUntilReset());
+    }
+
+    long wait = Math.max(0, pausedUntil - now);
+
+    if (tokens < 1) {
+      wait = Math.max(wait, (long) Math.ceil((1 - tokens) / tokensPerNano));
+    }
+
+    if (wait > 0 && (priority == Priority.BACKGROUND || wait > maxWaitNanos)) {
+      throw shed("Too many requests to Visual Crossing, retry later", Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait + TimeUnit.SECONDS.toNanos(1) - 1)));
+    }
+
+    tokens -= 1;
+    consumedRecords += records;
+    allowedRequests++;
+
+    return Duration.ofNanos(wait);
+  }
+
+  /**
+   * Backs off after Visual Crossing answered 429, emptying the bucket and pausing all requests for the time it asked for.
+   *
+   * @param headers The headers of the 429 response, possibly carrying a Retry-After value in seconds.
+   */
+  public synchronized void onUpstreamThrottled(HttpHeaders headers) {
+    long retryAfterSeconds = 1;
+    String retryAfter = headers == null ? null : headers.getFirst(HttpHeaders.RETRY_AFTER);
+
+    if (retryAfter != null) {
+      try {
+        retryAfterSeconds = Math.max(1, Long.parseLong(retryAfter.trim()));
+      } catch (NumberFormatException e) {
+        //An HTTP date instead of seconds, keep the default pause
+      }
+    }
+
+    long now = System.nanoTime();
+    refill(now);
+    tokens = Math.min(tokens, 0);
+    pausedUntil = Math.max(pausedUntil, now + TimeUnit.SECONDS.toNanos(retryAfterSeconds));
+  }
+
+  /**
+   * Takes a snapshot of the consumed and remaining quota.
+   *
+   * @return A QuotaStatus object with the live counters.
+   */
+  public synchronized QuotaStatus status() {
+    refill(System.nanoTime());
+
+    return new QuotaStatus(dailyRecords, consumedRecords, Math.max(0, tokens), allowedRequests, shedRequests, day.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant().toString());
+  }
+
+  /**
+   * Adds the tokens earned since the last refill and starts a new quota day at midnight UTC.
+   */
+  private void refill(long now) {
+    tokens = Math.min(burst, tokens + (now - refilledAt) * tokensPerNano);
+    refilledAt = now;
+
+    LocalDate today = LocalDate.now(ZoneOffset.UTC);
+    if (!today.equals(day)) {
+      day = today;
+      consumedRecords = 0;
+    }
+  }
+
+  private long secondsUntilReset() {
+    long now = System.currentTimeMillis() / 1000;
+
+    return Math.max(1, day.plusDays(1).atStartOfDay(ZoneOffset.UTC).toEpochSecond() - now);
+  }
+
+  private ShedException shed(String message, long retryAfterSeconds) {
+    shedRequests++;
+
+    HttpHeaders headers = new HttpHeaders();
+    headers.set(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+
+    return new ShedException(message, headers);
+  }
+
+  /**
+   * Shedding of a request by the limiter itself, reported as 429 Too Many Requests but never sent to Visual Crossing.
+   */
+  static final class ShedException extends HttpClientErrorException {
+    ShedException(String message, HttpHeaders headers) {
+      super(HttpStatus.TOO_MANY_REQUESTS, message, headers, null, null);
+    }
+  }
+}
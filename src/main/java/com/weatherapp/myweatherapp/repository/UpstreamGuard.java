@@ -0,0 +1,472 @@
+package com.weatherapp.myweatherapp.repository;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+/**
+ * Resilience layer around every call to Visual Crossing.
+ * A bulkhead bounds the number of calls in flight, a circuit breaker fails fast while the error or slow call rate is too high, and transient failures are retried with jittered exponential backoff.
+ * Only 502, 503 and 504 responses and I/O failures other than timeouts are retried, since a timed out attempt already used up the time the caller is willing to wait.
+ * Calls rejected by the bulkhead or the circuit breaker fail with a 503 HttpServerErrorException and are never retried, while a stale cached entry keeps being served by the ForecastCache.
+ * A retry that is rejected ends the call with the failure of the previous attempt instead, so the caller sees what Visual Crossing answered.
+ */
+@Component
+public class UpstreamGuard {
+  //Bulkhead limiting the calls in flight, so a slow upstream cannot hold every request thread
+  private final Semaphore bulkhead;
+  private final int maxConcurrent;
+  private final long acquireTimeoutMs;
+  private final int maxRetries;
+  private final long baseDelayMs;
+  private final long maxDelayMs;
+  private final CircuitBreaker breaker;
+  private final LongAdder rejectedCount = new LongAdder();
+  private final LongAdder retryCount = new LongAdder();
+
+  /**
+   * Creates an UpstreamGuard instance.
+   *
+   * @param maxConcurrent The maximum number of calls in flight.
+   * @param acquireTimeoutMs The maximum time a blocking call waits for a free slot before it is rejected.
+   * @param maxRetries The number of times a call failing with a transient error is retried.
+   * @param baseDelayMs The backoff before the first retry, doubled for every further retry.
+   * @param maxDelayMs The maximum backoff between two attempts.
+   * @param windowSize The number of most recent calls the circuit breaker evaluates.
+   * @param minimumCalls The number of recorded calls needed before the circuit can open.
+   * @param failureRatePercent The percentage of failed calls opening the circuit.
+   * @param slowCallMs The duration above which a call counts as slow.
+   * @param slowCallRatePercent The percentage of slow calls opening the circuit.
+   * @param openMs How long the circuit stays open before a trial call is let through.
+   */
+  public UpstreamGuard(@Value("${weather.upstream.max-concurrent}") int maxConcurrent, @Value("${weather.upstream.acquire-timeout-ms}") long acquireTimeoutMs, @Value("${weather.upstream.retry.max-retries}") int maxRetries, @Value("${weather.upstream.retry.base-delay-ms}") long baseDelayMs, @Value("${weather.upstream.retry.max-delay-ms}") long maxDelayMs, @Value("${weather.upstream.breaker.window-size}") int windowSize, @Value("${weather.upstream.breaker.minimum-calls}") int minimumCalls, @Value("${weather.upstream.breaker.failure-rate}") int failureRatePercent, @Value("${weather.upstream.breaker.slow-call-ms}") long slowCallMs, @Value("${weather.upstream.breaker.slow-call-rate}") int slowCallRatePercent, @Value("${weather.upstream.breaker.open-ms}") long openMs) {
+    this.bulkhead = new Semaphore(maxConcurrent);
+    this.maxConcurrent = maxConcurrent;
+    this.acquireTimeoutMs = acquireTimeoutMs;
+    this.maxRetries = maxRetries;
+    this.baseDelayMs = baseDelayMs;
+    this.maxDelayMs = maxDelayMs;
+    this.breaker = new CircuitBreaker(windowSize, minimumCalls, failureRatePercent, TimeUnit.MILLISECONDS.toNanos(slowCallMs), slowCallRatePercent, TimeUnit.MILLISECONDS.toNanos(openMs));
+  }
+
+  /**
+   * Runs a blocking call to Visual Crossing through the bulkhead and the circuit breaker, retrying transient errors.
+   *
+   * @param <T> The type of the result.
+   * @param upstream Makes the call.
+   * @return The result of the first successful attempt.
+   * @throws HttpServerErrorException With status 503 if the first attempt was rejected, or the server error of the last attempt.
+   */
+  public <T> T call(Supplier<T> upstream) {
+    return call(() -> {}, upstream);
+  }
+
+  /**
+   * Runs a blocking call to Visual Crossing through the bulkhead and the circuit breaker, retrying transient errors.
+   * The hook runs before every attempt that was let through, so that each request actually sent to Visual Crossing can be accounted for, and none that was rejected.
+   * A failing hook ends the call without counting against the circuit breaker, with the failure of the previous attempt if there was one.
+   *
+   * @param <T> The type of the result.
+   * @param beforeAttempt Runs before each attempt once it holds a bulkhead slot, e.g. to take a token from the QuotaLimiter.
+   * @param upstream Makes the call.
+   * @return The result of the first successful attempt.
+   * @throws HttpServerErrorException With status 503 if the first attempt was rejected, or the server error of the last attempt.
+   */
+  public <T> T call(Runnable beforeAttempt, Supplier<T> upstream) {
+    //Failure of the last attempt sent to Visual Crossing, thrown if the retry cannot be made
+    RuntimeException lastFailure = null;
+
+    for (int attempt = 0; ; attempt++) {
+      try {
+        acquire();
+      } catch (RuntimeException e) {
+        throw lastFailure != null ? lastFailure : e;
+      }
+
+      try {
+        beforeAttempt.run();
+      } catch (RuntimeException e) {
+        breaker.abandon();
+        bulkhead.release();
+        throw lastFailure != null ? lastFailure : e;
+      }
+
+      long start = System.nanoTime();
+
+      try {
+        T result = upstream.get();
+        breaker.record(false, System.nanoTime() - start);
+        return result;
+      } catch (RuntimeException e) {
+        breaker.record(isFailure(e), System.nanoTime() - start);
+
+        if (attempt >= maxRetries || !isRetryable(e)) {
+          throw e;
+        }
+        lastFailure = e;
+      } finally {
+        bulkhead.release();
+      }
+
+      retryCount.increment();
+      try {
+        Thread.sleep(backoff(attempt).toMillis());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while retrying the call to Visual Crossing");
+      }
+    }
+  }
+
+  /**
+   * Runs a non-blocking call to Visual Crossing through the bulkhead and the circuit breaker, retrying transient errors.
+   * The bulkhead never waits here, a call finding it full is rejected straight away.
+   *
+   * @param <T> The type of the result.
+   * @param upstream Creates the call, once per attempt.
+   * @return A Mono emitting the result of the first successful attempt, or failing like call.
+   */
+  public <T> Mono<T> callAsync(Supplier<Mono<T>> upstream) {
+    return callAsync(Mono::empty, upstream);
+  }
+
+  /**
+   * Runs a non-blocking call to Visual Crossing through the bulkhead and the circuit breaker, retrying transient errors.
+   * The bulkhead never waits here, a call finding it full is rejected straight away.
+   * The hook is subscribed before every attempt that was let through, like the one of call.
+   *
+   * @param <T> The type of the result.
+   * @param beforeAttempt Creates the step completing before each attempt once it holds a bulkhead slot, e.g. waiting for a token from the QuotaLimiter.
+   * @param upstream Creates the call, once per attempt.
+   * @return A Mono emitting the result of the first successful attempt, or failing like call.
+   */
+  public <T> Mono<T> callAsync(Supplier<Mono<Void>> beforeAttempt, Supplier<Mono<T>> upstream) {
+    return Mono.defer(() -> {
+      //Whether the current attempt reached Visual Crossing, and the failure of the last one that did
+      AtomicBoolean sent = new AtomicBoolean();
+      AtomicReference<Throwable> lastFailure = new AtomicReference<>();
+
+      return Mono.defer(() -> attemptAsync(beforeAttempt, upstream, sent))
+        .retryWhen(Retry.from(signals -> signals.concatMap(signal -> {
+          if (!sent.get() && lastFailure.get() != null) {
+            return Mono.error(lastFailure.get());
+          } else if (signal.totalRetries() >= maxRetries || !isRetryable(signal.failure())) {
+            return Mono.error(signal.failure());
+          }
+          lastFailure.set(signal.failure());
+          retryCount.increment();
+          return Mono.delay(backoff(signal.totalRetries()));
+        })));
+    });
+  }
+
+  private <T> Mono<T> attemptAsync(Supplier<Mono<Void>> beforeAttempt, Supplier<Mono<T>> upstream, AtomicBoolean sent) {
+    sent.set(false);
+
+    if (!bulkhead.tryAcquire()) {
+      return Mono.error(rejected("Too many concurrent calls to Visual Crossing"));
+    }
+
+    try {
+      breaker.acquirePermission();
+    } catch (RuntimeException e) {
+      bulkhead.release();
+      return Mono.error(e);
+    }
+
+    //Start of the call once the hook completed, 0 while the hook is still running
+    AtomicLong start = new AtomicLong();
+    //Releases the slot and the trial permission once, whichever way the attempt ends
+    AtomicBoolean finished = new AtomicBoolean();
+
+    return Mono.defer(beforeAttempt)
+      .then(Mono.defer(() -> {
+        start.set(System.nanoTime());
+        sent.set(true);
+        return upstream.get();
+      }))
+      .doOnSuccess(result -> {
+        if (finished.compareAndSet(false, true)) {
+          breaker.record(false, System.nanoTime() - start.get());
+          bulkhead.release();
+        }
+      })
+      .doOnError(e -> {
+        if (finished.compareAndSet(false, true)) {
+          if (start.get() == 0) {
+            breaker.abandon();
+          } else {
+            breaker.record(isFailure(e), System.nanoTime() - start.get());
+          }
+          bulkhead.release();
+        }
+      })
+      .doOnCancel(() -> {
+        if (finished.compareAndSet(false, true)) {
+          breaker.abandon();
+          bulkhead.release();
+        }
+      });
+  }
+
+  /**
+   * Takes a slot of the bulkhead and the permission of the circuit breaker, rejecting the call if either is unavailable.
+   */
+  private void acquire() {
+    breaker.checkClosed();
+
+    try {
+      if (!bulkhead.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+        throw rejected("Too many concurrent calls to Visual Crossing");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting to call Visual Crossing");
+    }
+
+    try {
+      breaker.acquirePermission();
+    } catch (RuntimeException e) {
+      bulkhead.release();
+      throw e;
+    }
+  }
+
+  /**
+   * Computes the delay before the given retry, drawn uniformly up to the capped exponential backoff so that callers failing together do not retry together.
+   */
+  private Duration backoff(long retry) {
+    long cap = Math.min(maxDelayMs, baseDelayMs << Math.min(retry, 20));
+
+    return Duration.ofMillis(ThreadLocalRandom.current().nextLong(cap + 1));
+  }
+
+  /**
+   * Checks whether the failure is a gateway error or an I/O failure worth retrying.
+   * Rejections of this guard, client errors, other server errors (e.g., 501 Not Implemented) and timeouts are never retried.
+   */
+  private static boolean isRetryable(Throwable e) {
+    if (e instanceof RejectedException) {
+      return false;
+    } else if (e instanceof HttpServerErrorException serverError) {
+      int status = serverError.getStatusCode().value();
+      return status == HttpStatus.BAD_GATEWAY.value() || status == HttpStatus.SERVICE_UNAVAILABLE.value() || status == HttpStatus.GATEWAY_TIMEOUT.value();
+    }
+
+    return (e instanceof ResourceAccessException || e instanceof IOException) && !isTimeout(e);
+  }
+
+  /**
+   * Checks whether the failure or one of its causes is a timeout, e.g. the SocketTimeoutException of a read exceeding the socket timeout.
+   */
+  private static boolean isTimeout(Throwable e) {
+    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+      if (cause instanceof InterruptedIOException || cause instanceof TimeoutException) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Checks whether the failure counts against the health of Visual Crossing.
+   * Client errors are caused by the request (e.g., an invalid city), except for 429 which means the upstream is refusing calls.
+   */
+  private static boolean isFailure(Throwable e) {
+    if (e instanceof HttpClientErrorException clientError) {
+      return clientError.getStatusCode().value() == HttpStatus.TOO_MANY_REQUESTS.value();
+    }
+
+    return true;
+  }
+
+  private RejectedException rejected(String message) {
+    rejectedCount.increment();
+    return new RejectedException(message);
+  }
+
+  /**
+   * Accesses the current state of the circuit breaker.
+   *
+   * @return CLOSED, OPEN or HALF_OPEN.
+   */
+  public String circuitState() {
+    return breaker.state().name();
+  }
+
+  /**
+   * Accesses the number of calls rejected by the bulkhead or the circuit breaker.
+   *
+   * @return The number of rejected calls.
+   */
+  public long rejectedCount() {
+    return rejectedCount.sum();
+  }
+
+  /**
+   * Accesses the number of retried attempts.
+   *
+   * @return The number of retries.
+   */
+  public long retryCount() {
+    return retryCount.sum();
+  }
+
+  /**
+   * Accesses the number of calls currently in flight.
+   *
+   * @return The number of taken bulkhead slots.
+   */
+  public int inFlightCount() {
+    return maxConcurrent - bulkhead.availablePermits();
+  }
+
+  /**
+   * Rejection of a call by the guard itself, reported as 503 Service Unavailable.
+   */
+  private static final class RejectedException extends HttpServerErrorException {
+    RejectedException(String message) {
+      super(HttpStatus.SERVICE_UNAVAILABLE, message);
+    }
+  }
+
+  private enum State { CLOSED, OPEN, HALF_OPEN }
+
+  /**
+   * Count based circuit breaker over the outcomes of the most recent calls.
+   * While open every call is rejected, and after the open time a single trial call decides whether the circuit closes again.
+   */
+  private final class CircuitBreaker {
+    private final boolean[] failed;
+    private final boolean[] slow;
+    private final int minimumCalls;
+    private final int failureRatePercent;
+    private final long slowCallNanos;
+    private final int slowCallRatePercent;
+    private final long openNanos;
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean trialInFlight;
+    private int next;
+    private int recorded;
+    private int failedCount;
+    private int slowCount;
+
+    CircuitBreaker(int windowSize, int minimumCalls, int failureRatePercent, long slowCallNanos, int slowCallRatePercent, long openNanos) {
+      this.failed = new boolean[windowSize];
+      this.slow = new boolean[windowSize];
+      this.minimumCalls = minimumCalls;
+      this.failureRatePercent = failureRatePercent;
+      this.slowCallNanos = slowCallNanos;
+      this.slowCallRatePercent = slowCallRatePercent;
+      this.openNanos = openNanos;
+    }
+
+    synchronized State state() {
+      if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) {
+        state = State.HALF_OPEN;
+        trialInFlight = false;
+      }
+
+      return state;
+    }
+
+    /**
+     * Rejects the call while the circuit is open, without claiming the trial call of a half open circuit.
+     */
+    synchronized void checkClosed() {
+      if (state() == State.OPEN) {
+        throw rejected("Visual Crossing is unavailable, calls are suspended for a while");
+      }
+    }
+
+    /**
+     * Lets the call through, or rejects it while the circuit is open or the trial call is running.
+     */
+    synchronized void acquirePermission() {
+      State current = state();
+
+      if (current == State.OPEN || (current == State.HALF_OPEN && trialInFlight)) {
+        throw rejected("Visual Crossing is unavailable, calls are suspended for a while");
+      } else if (current == State.HALF_OPEN) {
+        trialInFlight = true;
+      }
+    }
+
+    /**
+     * Records the outcome of a call that was let through.
+     */
+    synchronized void record(boolean callFailed, long elapsedNanos) {
+      boolean callSlow = elapsedNanos > slowCallNanos;
+
+      if (state == State.HALF_OPEN) {
+        if (callFailed || callSlow) {
+          open();
+        } else {
+          close();
+        }
+        return;
+      } else if (state == State.OPEN) {
+        return;
+      }
+
+      if (recorded == failed.length) {
+        failedCount -= failed[next] ? 1 : 0;
+        slowCount -= slow[next] ? 1 : 0;
+      } else {
+        recorded++;
+      }
+      failed[next] = callFailed;
+      slow[next] = callSlow;
+      failedCount += callFailed ? 1 : 0;
+      slowCount += callSlow ? 1 : 0;
+      next = (next + 1) % failed.length;
+
+      if (recorded >= minimumCalls && (failedCount * 100 >= failureRatePercent * recorded || slowCount * 100 >= slowCallRatePercent * recorded)) {
+        open();
+      }
+    }
+
+    /**
+     * Forgets a call that was cancelled before its outcome was known.
+     */
+    synchronized void abandon() {
+      if (state == State.HALF_OPEN) {
+        trialInFlight = false;
+      }
+    }
+
+    private void open() {
+      state = State.OPEN;
+      openedAt = System.nanoTime();
+    }
+
+    private void close() {
+      state = State.CLOSED;
+      next = 0;
+      recorded = 0;
+      failedCount = 0;
+      slowCount = 0;
+    }
+  }
+}
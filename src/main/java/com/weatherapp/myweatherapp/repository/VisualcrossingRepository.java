@@ -1,38 +1,75 @@
 package com.weatherapp.myweatherapp.repository;
 
 import com.weatherapp.myweatherapp.model.CityInfo;
+import com.weatherapp.myweatherapp.model.QuotaStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
 import org.springframework.stereotype.Repository;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.contextpropagation.ObservationThreadLocalAccessor;
+import reactor.core.publisher.Mono;
 
 /**
  * Repository layer responsible for accessing the weather data.
- * This class interacts with the Visual Crossing API to retrieve the weather data.
+ * This class interacts with the Visual Crossing API to retrieve the weather data, either blocking through RestTemplate or non-blocking through WebClient.
+ * Every lookup is observed with its cache outcome, and every upstream call with its outcome, including its retries but not the wait for the rate limit.
+ * The observations are timed and traced as spans tagged with includeLangId, the profile and the city, so a slow request shows which city's fetch was slow.
  */
 @Repository
 public class VisualcrossingRepository {
   private final RestTemplate restTemplate;  
+  private final WebClient webClient;
+  private final ForecastCache forecastCache;
+  private final ForecastStore forecastStore;
+  private final UpstreamGuard upstreamGuard;
+  private final QuotaLimiter quotaLimiter;
+  private final ObservationRegistry observationRegistry;
   private final String url;  
   private final String key; 
+  private final boolean unifiedFetch;
 
   /**
    * Creates a VisualcrossingRepository instance.
    * 
    * @param restTemplate Makes HTTP request to the Visual Crossing API.
+   * @param webClient Makes non-blocking HTTP request to the Visual Crossing API.
+   * @param forecastCache Holds recently retrieved weather data.
+   * @param forecastStore Persists retrieved weather data so that it survives a restart.
+   * @param upstreamGuard Bounds, retries and short-circuits the calls to the Visual Crossing API.
+   * @param quotaLimiter Paces the calls to the Visual Crossing API and accounts them against the daily quota of the key.
+   * @param observationRegistry Times and traces the lookups and the calls to the Visual Crossing API.
    * @param url Visual Crossing url.
    * @param key Visual Crossing API key.
+   * @param unifiedFetch specifies whether every request is fetched once with code names and translated locally, so that all endpoints share one upstream call per city.
    */
-  public VisualcrossingRepository(RestTemplate restTemplate, @Value("${weather.visualcrossing.url}") String url, @Value("${weather.visualcrossing.key}") String key) {
+  public VisualcrossingRepository(RestTemplate restTemplate, WebClient webClient, ForecastCache forecastCache, ForecastStore forecastStore, UpstreamGuard upstreamGuard, QuotaLimiter quotaLimiter, ObservationRegistry observationRegistry, @Value("${weather.visualcrossing.url}") String url, @Value("${weather.visualcrossing.key}") String key, @Value("${weather.visualcrossing.unified-fetch}") boolean unifiedFetch) {
     this.restTemplate = restTemplate;
+    this.webClient = webClient;
+    this.forecastCache = forecastCache;
+    this.forecastStore = forecastStore;
+    this.upstreamGuard = upstreamGuard;
+    this.quotaLimiter = quotaLimiter;
+    this.observationRegistry = observationRegistry;
     this.url = url;
     this.key = key;
+    this.unifiedFetch = unifiedFetch;
   }
 
   /**
-   * Retrieves the CityInfo object from Visual Crossing Weather.
+   * Retrieves the full timeline of the city from the cache, or from Visual Crossing Weather when it is not cached.
    * 
    * @param city The name of the city for which to fetch weather data.
    * @param includeLangId specifies whether the weather data should include code names to describe weather conditions.
@@ -42,15 +79,306 @@ public class VisualcrossingRepository {
    * @throws Exception If an unexpected error occurs during the API call.
    */
   public CityInfo getByCity(String city, boolean includeLangId) {
-    String uri = url + "timeline/" + city + "?key=" + key;
-    uri = includeLangId ? uri + "&lang=id" : uri;
+    return getByCity(city, includeLangId, QueryProfile.FULL);
+  }
 
-    try {
-      return restTemplate.getForObject(uri, CityInfo.class);
+  /**
+   * Retrieves the CityInfo object from the cache, or from Visual Crossing Weather when it is not cached.
+   * A stale entry is refreshed in the background with background priority, so the refresh is shed rather than delayed when the quota is short, and the lookup is still observed as a hit.
+   * In unified mode the data is always fetched with code names and the conditions are translated locally, so the includeLangId flag no longer causes a separate upstream call.
+   * 
+   * @param city The name of the city for which to fetch weather data.
+   * @param includeLangId specifies whether the weather data should include code names to describe weather conditions.
+   * @param profile The sections and elements of the timeline to request.
+   * @return A CityInfo object containing weather details.
+   * @throws HttpClientErrorException If API request failed (e.g., invalid city, invalid API key).
+   * @throws HttpServerErrorException If the server encounters an internal error.
+   * @throws Exception If an unexpected error occurs during the API call.
+   */
+  public CityInfo getByCity(String city, boolean includeLangId, QueryProfile profile) {
+    boolean langId = unifiedFetch || includeLangId;
+    Observation observation = lookupObservation(city, langId, profile);
+    AtomicBoolean loaded = new AtomicBoolean();
+
+    return observation.observe(() -> {
+      try {
+        return forecastCache.get(city, langId, profile, () -> {
+          loaded.set(true);
+          return load(city, langId, profile, QuotaLimiter.Priority.INTERACTIVE);
+        }, () -> load(city, langId, profile, QuotaLimiter.Priority.BACKGROUND));
+      } finally {
+        observation.lowCardinalityKeyValue("cache", loaded.get() ? "miss" : "hit");
+      }
+    });
+  }
+
+  /**
+   * Refreshes the cached CityInfo object of the city in the background, while the current one keeps being served.
+   * 
+   * @param city The name of the city for which to fetch weather data.
+   * @param includeLangId specifies whether the weather data should include code names to describe weather conditions.
+   * @param profile The sections and elements of the timeline to request.
+   * The refresh runs with background priority, so it is skipped rather than delayed when the rate limit or the reserved part of the quota is reached.
+   * @return A boolean stating whether a refresh was started, which is not the case if the city is already being loaded or too many refreshes are running.
+   */
+  public boolean refresh(String city, boolean includeLangId, QueryProfile profile) {
+    boolean langId = unifiedFetch || includeLangId;
+
+    return forecastCache.refresh(city, langId, profile, () -> load(city, langId, profile, QuotaLimiter.Priority.BACKGROUND));
+  }
+
+  /**
+   * Reports how much of the daily Visual Crossing quota has been consumed and how many requests were shed.
+   * 
+   * @return A QuotaStatus object with the live counters of the QuotaLimiter.
+   */
+  public QuotaStatus quotaStatus() {
+    return quotaLimiter.status();
+  }
+
+  /**
+   * Retrieves the full timeline of the city from the cache, or from Visual Crossing Weather without blocking when it is not cached.
+   * 
+   * @param city The name of the city for which to fetch weather data.
+   * @param includeLangId specifies whether the weather data should include code names to describe weather conditions.
+   * @return A Mono emitting the CityInfo object, or completing empty if Visual Crossing returned no data.
+   */
+  public Mono<CityInfo> getByCityAsync(String city, boolean includeLangId) {
+    return getByCityAsync(city, includeLangId, QueryProfile.FULL);
+  }
+
+  /**
+   * Retrieves the CityInfo object from the cache, or from Visual Crossing Weather without blocking when it is not cached.
+   * The cache and its in-flight loads are shared with getByCity, and stale entries are refreshed like there.
+   * 
+   * @param city The name of the city for which to fetch weather data.
+   * @param includeLangId specifies whether the weather data should include code names to describe weather conditions.
+   * @param profile The sections and elements of the timeline to request.
+   * @return A Mono emitting the CityInfo object, or completing empty if Visual Crossing returned no data.
+   */
+  public Mono<CityInfo> getByCityAsync(String city, boolean includeLangId, QueryProfile profile) {
+    boolean langId = unifiedFetch || includeLangId;
+
+    return Mono.defer(() -> {
+      Observation observation = lookupObservation(city, langId, profile).start();
+      AtomicBoolean loaded = new AtomicBoolean();
+
+      //The load is started within the scope, so the upstream call is traced as a child of the lookup
+      return Mono.fromFuture(() -> observation.scoped(() -> forecastCache.getAsync(city, langId, profile, () -> {
+          loaded.set(true);
+          return fetchByCityAsync(city, langId, profile)
+            .map(this::prepare)
+            //The store only queues the data for its writer thread, so the event loop never waits for the disk
+            .doOnNext(ci -> forecastStore.append(city, langId, profile, ci))
+            .toFuture();
+        }, () -> load(city, langId, profile, QuotaLimiter.Priority.BACKGROUND))))
+        .doOnError(observation::error)
+        .doFinally(signal -> observation.lowCardinalityKeyValue("cache", loaded.get() ? "miss" : "hit").stop());
+    });
+  }
+
+  /**
+   * Retrieves the CityInfo object from Visual Crossing Weather with interactive priority, bypassing the cache.
+   * 
+   * @param city The name of the city for which to fetch weather data.
+   * @param includeLangId specifies whether the weather data should include code names to describe weather conditions.
+   * @param profile The sections and elements of the timeline to request.
+   * @return A CityInfo object containing weather details.
+   * @throws HttpClientErrorException If API request failed (e.g., invalid city, invalid API key), or with status 429 if the request was shed by the QuotaLimiter.
+   * @throws HttpServerErrorException If the server encounters an internal error.
+   * @throws Exception If an unexpected error occurs during the API call.
+   */
+  public CityInfo fetchByCity(String city, boolean includeLangId, QueryProfile profile) {
+    return fetchByCity(city, includeLangId, profile, QuotaLimiter.Priority.INTERACTIVE);
+  }
+
+  /**
+   * Retrieves the CityInfo object from Visual Crossing Weather, bypassing the cache.
+   * Every attempt first takes a token from the QuotaLimiter, waiting for it if the priority allows, so retries are charged and rejected calls are not.
+   * 
+   * @param city The name of the city for which to fetch weather data.
+   * @param includeLangId specifies whether the weather data should include code names to describe weather conditions.
+   * @param profile The sections and elements of the timeline to request.
+   * @param priority How urgently the data is needed.
+   * @return A CityInfo object containing weather details.
+   * @throws HttpClientErrorException If API request failed (e.g., invalid city, invalid API key), or with status 429 if the request was shed by the QuotaLimiter.
+   * @throws HttpServerErrorException If the server encounters an internal error.
+   * @throws Exception If an unexpected error occurs during the API call.
+   */
+  public CityInfo fetchByCity(String city, boolean includeLangId, QueryProfile profile, QuotaLimiter.Priority priority) {
+    String uri = buildUri(city, includeLangId, profile);
+    Observation observation = upstreamObservation(city, includeLangId, profile).start();
+    Throwable failure = null;
+
+    try (Observation.Scope scope = observation.openScope()) {
+      //Every attempt the guard lets through is charged, retries included
+      return upstreamGuard.call(() -> pause(quotaLimiter.reserve(priority, profile.recordCost())), () -> restTemplate.getForObject(uri, CityInfo.class));
     } catch(HttpClientErrorException | HttpServerErrorException e) {
+      failure = e;
+      throttled(e);
       throw e;
     } catch (Exception e) {
+      failure = e;
       throw e;
+    } finally {
+      stop(observation, failure);
     }
   }
+
+  /**
+   * Retrieves the CityInfo object from Visual Crossing Weather without blocking, bypassing the cache.
+   * Error responses are converted into the same exceptions RestTemplate throws, so that the GlobalExceptionHandler maps them identically.
+   * 
+   * @param city The name of the city for which to fetch weather data.
+   * @param includeLangId specifies whether the weather data should include code names to describe weather conditions.
+   * @param profile The sections and elements of the timeline to request.
+   * Every attempt first takes a token from the QuotaLimiter with interactive priority, waiting for it on a timer rather than a thread.
+   * @return A Mono emitting the CityInfo object, or failing with HttpClientErrorException or HttpServerErrorException.
+   */
+  public Mono<CityInfo> fetchByCityAsync(String city, boolean includeLangId, QueryProfile profile) {
+    String uri = buildUri(city, includeLangId, profile);
+
+    return Mono.defer(() -> {
+      Observation observation = upstreamObservation(city, includeLangId, profile).start();
+
+      //Every attempt the guard lets through is charged, retries included
+      return upstreamGuard.callAsync(() -> {
+          Duration wait = quotaLimiter.reserve(QuotaLimiter.Priority.INTERACTIVE, profile.recordCost());
+
+          return wait.isZero() ? Mono.empty() : Mono.delay(wait).then();
+        }, () -> webClient.get()
+          .uri(uri)
+          .retrieve()
+          .onStatus(HttpStatusCode::isError, VisualcrossingRepository::toRestClientException)
+          .bodyToMono(CityInfo.class)
+          //WebClient takes the parent of its request observation from the subscriber context
+          .contextWrite(context -> context.put(ObservationThreadLocalAccessor.KEY, observation)))
+        .doOnSuccess(ci -> stop(observation, null))
+        .doOnError(e -> stop(observation, e))
+        .doOnError(this::throttled);
+    });
+  }
+
+  /**
+   * Builds the Visual Crossing timeline URI for the city, restricted to the sections and elements of the profile.
+   */
+  private String buildUri(String city, boolean includeLangId, QueryProfile profile) {
+    String uri = url + "timeline/" + ForecastCache.tidy(city) + "?key=" + key + profile.queryParameters();
+
+    return includeLangId ? uri + "&lang=id" : uri;
+  }
+
+  /**
+   * Fetches and prepares the CityInfo object of the city and persists it in the store.
+   */
+  private CityInfo load(String city, boolean includeLangId, QueryProfile profile, QuotaLimiter.Priority priority) {
+    CityInfo ci = prepare(fetchByCity(city, includeLangId, profile, priority));
+    forecastStore.append(city, includeLangId, profile, ci);
+
+    return ci;
+  }
+
+  /**
+   * Waits for the time the QuotaLimiter reserved the request ahead of.
+   */
+  private static void pause(Duration wait) {
+    if (wait.isZero()) {
+      return;
+    }
+
+    try {
+      Thread.sleep(wait.toMillis(), (int) (wait.toNanos() % 1_000_000));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for the Visual Crossing rate limit", e);
+    }
+  }
+
+  /**
+   * Creates the observation of a cache lookup, whose cache outcome is added once it is known.
+   */
+  private Observation lookupObservation(String city, boolean includeLangId, QueryProfile profile) {
+    return Observation.createNotStarted("weather.lookup", observationRegistry)
+      .contextualName("getByCity")
+      .lowCardinalityKeyValue("includeLangId", String.valueOf(includeLangId))
+      .lowCardinalityKeyValue("profile", profile.name())
+      .highCardinalityKeyValue("city", city);
+  }
+
+  /**
+   * Creates the observation of an upstream call, whose outcome is added when it is stopped.
+   */
+  private Observation upstreamObservation(String city, boolean includeLangId, QueryProfile profile) {
+    return Observation.createNotStarted("weather.upstream.requests", observationRegistry)
+      .contextualName("visualcrossing timeline")
+      .lowCardinalityKeyValue("includeLangId", String.valueOf(includeLangId))
+      .lowCardinalityKeyValue("profile", profile.name())
+      .highCardinalityKeyValue("city", city);
+  }
+
+  /**
+   * Stops the observation of an upstream call, the outcome being derived from the failure or `SUCCESS` without one.
+   * A call shed by the QuotaLimiter before reaching Visual Crossing is reported as `SHED`.
+   */
+  private static void stop(Observation observation, Throwable failure) {
+    String outcome = "SUCCESS";
+
+    if (failure instanceof QuotaLimiter.ShedException) {
+      outcome = "SHED";
+    } else if (failure instanceof HttpClientErrorException) {
+      outcome = "CLIENT_ERROR";
+    } else if (failure instanceof HttpServerErrorException) {
+      outcome = "SERVER_ERROR";
+    } else if (failure != null) {
+      outcome = "UNKNOWN";
+    }
+
+    if (failure != null) {
+      observation.error(failure);
+    }
+    observation.lowCardinalityKeyValue("outcome", outcome).stop();
+  }
+
+  /**
+   * Lets the QuotaLimiter back off when Visual Crossing answered 429, but not when the QuotaLimiter shed the call itself.
+   */
+  private void throttled(Throwable e) {
+    if (e instanceof HttpClientErrorException clientError && !(e instanceof QuotaLimiter.ShedException) && clientError.getStatusCode().isSameCodeAs(HttpStatus.TOO_MANY_REQUESTS)) {
+      quotaLimiter.onUpstreamThrottled(clientError.getResponseHeaders());
+    }
+  }
+
+  /**
+   * Applies the local post-processing of a freshly fetched CityInfo object before it is cached.
+   */
+  private CityInfo prepare(CityInfo ci) {
+    if (ci == null) {
+      return null;
+    }
+
+    ci.setFetchedAt(System.currentTimeMillis());
+
+    if (unifiedFetch) {
+      ci.describeConditionCodes();
+    }
+
+    return ci;
+  }
+
+  /**
+   * Converts an error response received by WebClient into the exception RestTemplate would have thrown for it.
+   */
+  private static Mono<Throwable> toRestClientException(ClientResponse response) {
+    return response.bodyToMono(byte[].class)
+      .defaultIfEmpty(new byte[0])
+      .map(body -> {
+        HttpStatusCode status = response.statusCode();
+        String statusText = status.toString();
+
+        if (status.is4xxClientError()) {
+          return HttpClientErrorException.create(status, statusText, response.headers().asHttpHeaders(), body, StandardCharsets.UTF_8);
+        }
+        return HttpServerErrorException.create(status, statusText, response.headers().asHttpHeaders(), body, StandardCharsets.UTF_8);
+      });
+  }
 }
@@ -1,10 +1,44 @@
 package com.weatherapp.myweatherapp.service;
 
+import com.weatherapp.myweatherapp.model.CityError;
 import com.weatherapp.myweatherapp.model.CityInfo;
+import com.weatherapp.myweatherapp.model.DaylightRanking;
+import com.weatherapp.myweatherapp.model.ForecastBatch;
+import com.weatherapp.myweatherapp.model.QuotaStatus;
+import com.weatherapp.myweatherapp.model.RainStatus;
+import com.weatherapp.myweatherapp.repository.QueryProfile;
 import com.weatherapp.myweatherapp.repository.VisualcrossingRepository;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.HttpStatusCodeException;
+
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
 
 /**
  * Service layer responsible for executing the business logic.
@@ -16,6 +50,22 @@ public class WeatherService {
   @Autowired
   VisualcrossingRepository weatherRepo;
 
+  //Injected executor used to fetch several cities from Visual Crossing in parallel
+  @Autowired
+  ExecutorService fetchExecutor;
+
+  //Maximum time to wait for all the cities of a single request to be fetched
+  @Value("${weather.fetch.timeout-ms}")
+  long fetchTimeoutMs;
+
+  //Maximum number of cities of a single multi-city request fetched at the same time
+  @Value("${weather.batch.parallelism}")
+  int batchParallelism;
+
+  //Maximum number of distinct cities accepted in a single multi-city request
+  @Value("${weather.batch.max-cities}")
+  int batchMaxCities;
+
   /**
    * Retrieves the weather forecast for a given city.
    * 
@@ -24,7 +74,7 @@ public class WeatherService {
    * @throws IllegalArgumentException If the city is not found.
    */
   public CityInfo forecastByCity(String city) {
-    CityInfo ci = weatherRepo.getByCity(city, false);
+    CityInfo ci = weatherRepo.getByCity(city, false, QueryProfile.FULL);
 
     if (ci == null) {
       throw new IllegalArgumentException("City data could not be found for: " + city);
@@ -33,6 +83,34 @@ public class WeatherService {
     return ci;
   }
 
+  /**
+   * Retrieves the weather forecasts for several cities at once.
+   * Repeated cities are fetched once, and a city that fails is reported in the errors of the batch instead of failing the other cities.
+   * 
+   * @param cities The names of the cities for which to fetch weather data.
+   * @return A ForecastBatch object containing the forecast or the error of each distinct city.
+   * @throws IllegalArgumentException If no city or more than the maximum number of cities is given.
+   */
+  public ForecastBatch forecastBatch(List<String> cities) {
+    Map<String, CompletableFuture<CityInfo>> fetches = fetchEach(distinctCities(cities), false, QueryProfile.FULL);
+    ForecastBatch batch = new ForecastBatch();
+
+    fetches.forEach((city, fetch) -> {
+      try {
+        CityInfo ci = fetch.join();
+
+        if (ci == null) {
+          throw new IllegalArgumentException("City data could not be found for: " + city);
+        }
+        batch.getForecasts().put(city, ci);
+      } catch (RuntimeException e) {
+        batch.getErrors().put(city, toCityError(e));
+      }
+    });
+
+    return batch;
+  }
+
   /**
    * Compares the daylight duration between the given cities. 
    * 
@@ -41,9 +119,17 @@ public class WeatherService {
    * @return A message specifiying which city has the longer daylight duration.
    */
   public String compareDaylightHours(String city1, String city2) {
-    CityInfo ci1 = weatherRepo.getByCity(city1, false);
-    CityInfo ci2 = weatherRepo.getByCity(city2, false);
+    List<CityInfo> cities = fetchConcurrently(false, QueryProfile.CURRENT, city1, city2);
+    CityInfo ci1 = cities.get(0);
+    CityInfo ci2 = cities.get(1);
+
+    return longerDaylight(ci1, ci2);
+  }
 
+  /**
+   * Builds the message stating which of the two cities has the longer daylight duration.
+   */
+  private String longerDaylight(CityInfo ci1, CityInfo ci2) {
     long city1Daylight = ci1.getDaylightDuration();
     long city2Daylight = ci2.getDaylightDuration();
 
@@ -56,6 +142,51 @@ public class WeatherService {
     }
   }
 
+  /**
+   * Ranks several cities by their daylight duration, longest first.
+   * The cities are fetched concurrently and the daylight duration of each is calculated once.
+   * 
+   * @param cities The names of the cities to rank.
+   * @param top The number of cities to keep, or null to keep all of them.
+   * @return A DaylightRanking object containing the ranked cities and the errors of the cities that could not be ranked.
+   * @throws IllegalArgumentException If no city, more than the maximum number of cities or a non-positive top is given.
+   */
+  public DaylightRanking rankDaylight(List<String> cities, Integer top) {
+    if (top != null && top < 1) {
+      throw new IllegalArgumentException("The number of top cities must be at least 1, but was: " + top);
+    }
+
+    Map<String, CompletableFuture<CityInfo>> fetches = fetchEach(distinctCities(cities), false, QueryProfile.CURRENT);
+    DaylightRanking ranking = new DaylightRanking();
+    Comparator<DaylightRanking.Entry> longestFirst = Comparator.comparingLong(DaylightRanking.Entry::getDaylightSeconds).reversed();
+    //More entries than cities can never be kept, so a huge top does not size the heap
+    int keep = top == null ? fetches.size() : Math.min(top, fetches.size());
+    //Min-heap of the longest days seen so far, so only the top entries are ever kept and sorted
+    PriorityQueue<DaylightRanking.Entry> longest = new PriorityQueue<>(keep + 1, longestFirst.reversed());
+
+    fetches.forEach((city, fetch) -> {
+      try {
+        CityInfo ci = fetch.join();
+
+        if (ci == null) {
+          throw new IllegalArgumentException("City data could not be found for: " + city);
+        }
+        longest.add(new DaylightRanking.Entry(city, ci.getAddress(), ci.getDaylightDuration()));
+
+        if (longest.size() > keep) {
+          longest.poll();
+        }
+      } catch (RuntimeException e) {
+        ranking.getErrors().put(city, toCityError(e));
+      }
+    });
+
+    ranking.getRanking().addAll(longest);
+    ranking.getRanking().sort(longestFirst);
+
+    return ranking;
+  }
+
   /**
    * Checks the weather conditions in the given cities. 
    * 
@@ -64,9 +195,17 @@ public class WeatherService {
    * @return A message specifiying where it is currently raining.
    */
   public String rainCheck(String city1, String city2) {
-    CityInfo ci1 = weatherRepo.getByCity(city1, true);
-    CityInfo ci2 = weatherRepo.getByCity(city2, true);
+    List<CityInfo> cities = fetchConcurrently(true, QueryProfile.CURRENT, city1, city2);
+    CityInfo ci1 = cities.get(0);
+    CityInfo ci2 = cities.get(1);
 
+    return rainConditions(ci1, ci2);
+  }
+
+  /**
+   * Builds the message stating which of the two cities are experiencing rain.
+   */
+  private String rainConditions(CityInfo ci1, CityInfo ci2) {
     boolean city1HasRain = ci1.isRaining();
     boolean city2HasRain = ci2.isRaining();
 
@@ -80,4 +219,317 @@ public class WeatherService {
       return "It is not raining in either city.";
     }
   }
+
+  /**
+   * Checks whether it is currently raining in each of several cities.
+   * The cities are fetched concurrently with their condition code names, and a city that fails is reported in the errors instead of failing the other cities.
+   * 
+   * @param cities The names of the cities to check.
+   * @return A RainStatus object mapping each distinct city to whether it is raining there.
+   * @throws IllegalArgumentException If no city or more than the maximum number of cities is given.
+   */
+  public RainStatus rainStatus(List<String> cities) {
+    Map<String, CompletableFuture<CityInfo>> fetches = fetchEach(distinctCities(cities), true, QueryProfile.CURRENT);
+    RainStatus status = new RainStatus();
+
+    fetches.forEach((city, fetch) -> {
+      try {
+        CityInfo ci = fetch.join();
+
+        if (ci == null) {
+          throw new IllegalArgumentException("City data could not be found for: " + city);
+        }
+        status.getRaining().put(city, ci.isRaining());
+      } catch (RuntimeException e) {
+        status.getErrors().put(city, toCityError(e));
+      }
+    });
+
+    return status;
+  }
+
+  /**
+   * Reports how much of the daily Visual Crossing quota has been consumed.
+   * 
+   * @return A QuotaStatus object with the consumed and remaining records and the requests shed by the rate limiter.
+   */
+  public QuotaStatus quotaStatus() {
+    return weatherRepo.quotaStatus();
+  }
+
+  /**
+   * Retrieves the weather forecast for a given city without blocking the calling thread.
+   * 
+   * @param city The name of the city for which to fetch weather data.
+   * @return A Mono emitting the CityInfo object, or failing with IllegalArgumentException if the city is not found.
+   */
+  public Mono<CityInfo> forecastByCityAsync(String city) {
+    return requireCity(city, false, QueryProfile.FULL);
+  }
+
+  /**
+   * Compares the daylight duration between the given cities without blocking the calling thread.
+   * 
+   * @param city1 The first city.
+   * @param city2 The second city.
+   * @return A Mono emitting a message specifiying which city has the longer daylight duration.
+   */
+  public Mono<String> compareDaylightHoursAsync(String city1, String city2) {
+    return fetchBothAsync(false, QueryProfile.CURRENT, city1, city2).map(cities -> longerDaylight(cities.getT1(), cities.getT2()));
+  }
+
+  /**
+   * Checks the weather conditions in the given cities without blocking the calling thread.
+   * 
+   * @param city1 The first city.
+   * @param city2 The second city.
+   * @return A Mono emitting a message specifiying where it is currently raining.
+   */
+  public Mono<String> rainCheckAsync(String city1, String city2) {
+    return fetchBothAsync(true, QueryProfile.CURRENT, city1, city2).map(cities -> rainConditions(cities.getT1(), cities.getT2()));
+  }
+
+  /**
+   * Fetches two cities concurrently without blocking, cancelling the other fetch as soon as one fails.
+   * 
+   * @param includeLangId specifies whether the weather data should include code names to describe weather conditions.
+   * @param profile The sections and elements of the timeline to request.
+   * @param city1 The first city.
+   * @param city2 The second city.
+   * @return A Mono emitting both CityInfo objects, or failing with a 504 HttpServerErrorException after the configured timeout.
+   */
+  private Mono<Tuple2<CityInfo, CityInfo>> fetchBothAsync(boolean includeLangId, QueryProfile profile, String city1, String city2) {
+    return Mono.zip(requireCity(city1, includeLangId, profile), requireCity(city2, includeLangId, profile))
+      .timeout(Duration.ofMillis(fetchTimeoutMs), Mono.error(() -> new HttpServerErrorException(HttpStatus.GATEWAY_TIMEOUT, "Timed out fetching weather data for: " + city1 + ", " + city2)));
+  }
+
+  /**
+   * Fetches a city without blocking and fails with IllegalArgumentException when Visual Crossing returned no data for it.
+   */
+  private Mono<CityInfo> requireCity(String city, boolean includeLangId, QueryProfile profile) {
+    return weatherRepo.getByCityAsync(city, includeLangId, profile)
+      .switchIfEmpty(Mono.error(() -> new IllegalArgumentException("City data could not be found for: " + city)));
+  }
+
+  /**
+   * Fetches the weather data of the given cities in parallel.
+   * As soon as one fetch fails the remaining ones are cancelled and their threads interrupted, and the failure of the first city in argument order is rethrown unchanged.
+   * 
+   * @param includeLangId specifies whether the weather data should include code names to describe weather conditions.
+   * @param profile The sections and elements of the timeline to request.
+   * @param cities The cities to fetch.
+   * @return The CityInfo objects in the same order as the given cities.
+   * @throws HttpServerErrorException With status 504 if the cities could not be fetched within the configured timeout, or 503 if the fetch executor is full.
+   * @throws IllegalStateException If the calling thread is interrupted while waiting.
+   */
+  List<CityInfo> fetchConcurrently(boolean includeLangId, QueryProfile profile, String... cities) {
+    List<CompletableFuture<CityInfo>> futures = new ArrayList<>(cities.length);
+    //Tasks running the fetches, kept because cancelling a CompletableFuture does not interrupt the thread completing it
+    List<Future<?>> tasks = new ArrayList<>(cities.length);
+
+    try {
+      for (String city : cities) {
+        CompletableFuture<CityInfo> future = new CompletableFuture<>();
+        futures.add(future);
+        tasks.add(fetchExecutor.submit(() -> {
+          try {
+            future.complete(weatherRepo.getByCity(city, includeLangId, profile));
+          } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+          }
+        }));
+      }
+    } catch (RejectedExecutionException e) {
+      cancelAll(tasks, futures);
+      throw busy(String.join(", ", cities));
+    }
+
+    for (CompletableFuture<CityInfo> future : futures) {
+      future.whenComplete((ci, e) -> {
+        if (e != null) {
+          cancelAll(tasks, futures);
+        }
+      });
+    }
+
+    try {
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(fetchTimeoutMs, TimeUnit.MILLISECONDS);
+    } catch (ExecutionException | CancellationException e) {
+      throw firstFailure(futures);
+    } catch (TimeoutException e) {
+      cancelAll(tasks, futures);
+      throw new HttpServerErrorException(HttpStatus.GATEWAY_TIMEOUT, "Timed out fetching weather data for: " + String.join(", ", cities));
+    } catch (InterruptedException e) {
+      cancelAll(tasks, futures);
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while fetching weather data for: " + String.join(", ", cities));
+    }
+
+    List<CityInfo> results = new ArrayList<>(cities.length);
+    futures.forEach(future -> results.add(future.join()));
+
+    return results;
+  }
+
+  /**
+   * Interrupts the fetches still running and cancels the futures they have not completed yet.
+   */
+  private static void cancelAll(List<Future<?>> tasks, List<CompletableFuture<CityInfo>> futures) {
+    tasks.forEach(task -> task.cancel(true));
+    futures.forEach(future -> future.cancel(false));
+  }
+
+  /**
+   * Creates the failure reported when the fetch executor has no free thread nor queue slot left.
+   */
+  private static HttpServerErrorException busy(String cities) {
+    return new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE, "Too many weather requests in progress, try again later: " + cities);
+  }
+
+  /**
+   * Finds the failure of the first fetch which did not fail because it was cancelled by a sibling.
+   * 
+   * @param futures The completed fetches.
+   * @return The exception to rethrow to the caller.
+   */
+  private RuntimeException firstFailure(List<CompletableFuture<CityInfo>> futures) {
+    for (CompletableFuture<CityInfo> future : futures) {
+      if (!future.isCompletedExceptionally() || future.isCancelled()) {
+        continue;
+      }
+
+      try {
+        future.join();
+      } catch (CompletionException e) {
+        Throwable cause = e.getCause();
+
+        if (cause instanceof RuntimeException re) {
+          return re;
+        } else if (cause instanceof Error err) {
+          throw err;
+        }
+        return new IllegalStateException(cause.getMessage(), cause);
+      }
+    }
+
+    return new IllegalStateException("Fetching weather data was cancelled");
+  }
+
+  /**
+   * Removes blank and repeated cities, ignoring case and surrounding whitespace, while keeping the first spelling of each city.
+   * 
+   * @param cities The cities as requested.
+   * @return The distinct cities in request order.
+   * @throws IllegalArgumentException If no city or more than the maximum number of cities is given.
+   */
+  Collection<String> distinctCities(List<String> cities) {
+    Map<String, String> distinct = new LinkedHashMap<>();
+
+    if (cities != null) {
+      for (String city : cities) {
+        if (city != null && !city.isBlank()) {
+          distinct.putIfAbsent(city.trim().toLowerCase(Locale.ROOT), city.trim());
+        }
+      }
+    }
+
+    if (distinct.isEmpty()) {
+      throw new IllegalArgumentException("At least one city must be given.");
+    } else if (distinct.size() > batchMaxCities) {
+      throw new IllegalArgumentException("At most " + batchMaxCities + " cities can be requested at once, but " + distinct.size() + " were given.");
+    }
+
+    return distinct.values();
+  }
+
+  /**
+   * Fetches the weather data of many cities with bounded parallelism, keeping the outcome of each city separate.
+   * A fixed number of workers take the next pending city until none are left, so a large batch never occupies more than that many executor threads.
+   * The configured timeout applies to each city from the moment a worker starts fetching it, so cities queued behind others or waiting for quota tokens are not charged for the time before.
+   * A city not fetched within it fails with a 504 HttpServerErrorException, its worker moving on once the call returns and being interrupted when the batch ends, and if the fetch executor is full every city fails with 503.
+   * 
+   * @param cities The distinct cities to fetch.
+   * @param includeLangId specifies whether the weather data should include code names to describe weather conditions.
+   * @param profile The sections and elements of the timeline to request.
+   * @return A completed future per city in request order, holding its CityInfo object or its failure.
+   */
+  Map<String, CompletableFuture<CityInfo>> fetchEach(Collection<String> cities, boolean includeLangId, QueryProfile profile) {
+    Map<String, CompletableFuture<CityInfo>> fetches = new LinkedHashMap<>();
+    cities.forEach(city -> fetches.put(city, new CompletableFuture<>()));
+
+    Queue<Map.Entry<String, CompletableFuture<CityInfo>>> pending = new ConcurrentLinkedQueue<>(fetches.entrySet());
+    int parallelism = Math.max(1, Math.min(batchParallelism, fetches.size()));
+    List<Future<?>> workers = new ArrayList<>(parallelism);
+
+    for (int i = 0; i < parallelism; i++) {
+      try {
+        workers.add(fetchExecutor.submit(() -> {
+          Map.Entry<String, CompletableFuture<CityInfo>> next;
+
+          while ((next = pending.poll()) != null) {
+            String city = next.getKey();
+            CompletableFuture<CityInfo> fetch = next.getValue();
+            //The deadline of the city starts with its fetch, whatever the cities before it took
+            CompletableFuture.delayedExecutor(fetchTimeoutMs, TimeUnit.MILLISECONDS).execute(() -> fetch.completeExceptionally(timedOut(city)));
+
+            try {
+              fetch.complete(weatherRepo.getByCity(city, includeLangId, profile));
+            } catch (RuntimeException e) {
+              fetch.completeExceptionally(e);
+            }
+          }
+        }));
+      } catch (RejectedExecutionException e) {
+        //The workers already running take over the cities of the rejected ones
+        break;
+      }
+    }
+
+    if (workers.isEmpty()) {
+      fetches.forEach((city, fetch) -> fetch.completeExceptionally(busy(city)));
+      return fetches;
+    }
+
+    try {
+      //Every city completes within its own deadline once a worker took it
+      CompletableFuture.allOf(fetches.values().toArray(new CompletableFuture[0]))
+        .handle((ignored, e) -> null)
+        .get();
+    } catch (ExecutionException e) {
+      pending.clear();
+    } catch (InterruptedException e) {
+      pending.clear();
+      Thread.currentThread().interrupt();
+    }
+
+    fetches.forEach((city, fetch) -> fetch.completeExceptionally(timedOut(city)));
+    workers.forEach(worker -> worker.cancel(true));
+
+    return fetches;
+  }
+
+  /**
+   * Creates the failure reported when a city was not fetched within its deadline.
+   */
+  private static HttpServerErrorException timedOut(String city) {
+    return new HttpServerErrorException(HttpStatus.GATEWAY_TIMEOUT, "Timed out fetching weather data for: " + city);
+  }
+
+  /**
+   * Converts the failure of a single city into the status and message the GlobalExceptionHandler would have returned for it.
+   * 
+   * @param e The failure, possibly wrapped by a CompletableFuture.
+   * @return A CityError object describing the failure.
+   */
+  static CityError toCityError(Throwable e) {
+    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+
+    if (cause instanceof HttpStatusCodeException statusException) {
+      return new CityError(statusException.getStatusCode().value(), statusException.getMessage());
+    } else if (cause instanceof IllegalArgumentException) {
+      return new CityError(HttpStatus.BAD_REQUEST.value(), cause.getMessage());
+    }
+
+    return new CityError(HttpStatus.INTERNAL_SERVER_ERROR.value(), cause.getMessage());
+  }
 }
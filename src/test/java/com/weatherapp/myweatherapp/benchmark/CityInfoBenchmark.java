@@ -0,0 +1,82 @@
+package com.weatherapp.myweatherapp.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.weatherapp.myweatherapp.model.CityInfo;
+
+/**
+ * JMH benchmark of the rain and daylight evaluation of CityInfo.
+ * Setting the conditions and sun times is measured as well, since that is where they are parsed for the checks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CityInfoBenchmark {
+    private CityInfo raining;
+    private CityInfo dry;
+
+    /**
+     * Creates one city where it is raining and one where it is not.
+     */
+    @Setup
+    public void setUp() {
+        raining = newCityInfo("London", "type_41, type_21", "05:32:11", "20:24:45");
+        dry = newCityInfo("Cairo", "type_43", "06:01:30", "19:45:02");
+    }
+
+    /**
+     * Checks for rain in a city where it is raining.
+     */
+    @Benchmark
+    public boolean isRaining_rain() {
+        return raining.isRaining();
+    }
+
+    /**
+     * Checks for rain in a city where it is not raining.
+     */
+    @Benchmark
+    public boolean isRaining_dry() {
+        return dry.isRaining();
+    }
+
+    /**
+     * Calculates the daylight duration.
+     */
+    @Benchmark
+    public long getDaylightDuration() {
+        return raining.getDaylightDuration();
+    }
+
+    /**
+     * Sets the conditions and sun times, which parses them for the checks above.
+     */
+    @Benchmark
+    public CityInfo setConditionsAndSunTimes() {
+        return newCityInfo("London", "type_41, type_21", "05:32:11", "20:24:45");
+    }
+
+    private static CityInfo newCityInfo(String address, String conditions, String sunrise, String sunset) {
+        CityInfo ci = new CityInfo();
+        ci.setAddress(address);
+        ci.setConditions(conditions);
+        ci.setSunrise(sunrise);
+        ci.setSunset(sunset);
+
+        return ci;
+    }
+}
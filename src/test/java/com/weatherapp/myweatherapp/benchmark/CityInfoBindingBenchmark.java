@@ -0,0 +1,67 @@
+package com.weatherapp.myweatherapp.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.weatherapp.myweatherapp.model.CityInfo;
+import com.weatherapp.myweatherapp.model.CityInfoReader;
+
+/**
+ * JMH benchmark of binding Visual Crossing timeline responses into CityInfo objects.
+ * The streaming CityInfoReader used by the application is measured next to the default Jackson binding it replaced, for the full timeline and the current conditions timeline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CityInfoBindingBenchmark {
+    @Param({"full", "current"})
+    public String timeline;
+
+    private ObjectMapper objectMapper;
+    private byte[] payload;
+
+    /**
+     * Builds the payload and an ObjectMapper configured like Spring Boot's.
+     */
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        payload = "full".equals(timeline) ? TimelinePayloads.fullTimeline("London", 42) : TimelinePayloads.currentTimeline("London", 42);
+    }
+
+    /**
+     * Binds the payload with the streaming reader, skipping the unused parts of the timeline.
+     */
+    @Benchmark
+    public CityInfo streamingReader() throws IOException {
+        try (JsonParser parser = objectMapper.createParser(payload)) {
+            return CityInfoReader.read(parser);
+        }
+    }
+
+    /**
+     * Binds the payload with the default Jackson data binding.
+     */
+    @Benchmark
+    public CityInfo databind() throws IOException {
+        return objectMapper.readValue(payload, CityInfo.class);
+    }
+}
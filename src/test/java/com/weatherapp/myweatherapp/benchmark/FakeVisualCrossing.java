@@ -0,0 +1,145 @@
+package com.weatherapp.myweatherapp.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Embedded stand-in for the Visual Crossing timeline API, so the application can be load tested without calling the real one.
+ * Every response is delayed by the configured latency, and a configured share of the requests fails with `500` or `429`.
+ * Requests for the current conditions only get the small current timeline, every other request gets a full timeline of the configured number of days.
+ */
+public class FakeVisualCrossing implements AutoCloseable {
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final long latencyMs;
+    private final int payloadDays;
+    private final double errorRate;
+    private final double throttleRate;
+    //Payloads by city and timeline, built once per city
+    private final Map<String, byte[]> payloads = new ConcurrentHashMap<>();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    /**
+     * Creates and starts a FakeVisualCrossing server on a free local port.
+     *
+     * @param latencyMs The time each response is delayed by.
+     * @param payloadDays The number of days of a full timeline, which sets the payload size.
+     * @param errorRate The share of requests answered with `500 Internal Server Error`, between 0 and 1.
+     * @param throttleRate The share of requests answered with `429 Too Many Requests`, between 0 and 1.
+     * @throws IOException If the server cannot be bound.
+     */
+    public FakeVisualCrossing(long latencyMs, int payloadDays, double errorRate, double throttleRate) throws IOException {
+        this.latencyMs = latencyMs;
+        this.payloadDays = payloadDays;
+        this.errorRate = errorRate;
+        this.throttleRate = throttleRate;
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "fake-visualcrossing");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        this.server.createContext("/timeline/", this::handle);
+        this.server.setExecutor(executor);
+        this.server.start();
+    }
+
+    /**
+     * Accesses the base url to configure as `weather.visualcrossing.url`.
+     *
+     * @return The url of the server, ending with a slash.
+     */
+    public String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    /**
+     * Checks how many timeline requests the server received.
+     *
+     * @return The number of requests.
+     */
+    public long requestCount() {
+        return requests.get();
+    }
+
+    /**
+     * Checks how many requests were answered with an injected error.
+     *
+     * @return The number of `500` and `429` responses.
+     */
+    public long errorCount() {
+        return errors.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.incrementAndGet();
+            sleep(latencyMs);
+
+            double roll = ThreadLocalRandom.current().nextDouble();
+
+            if (roll < errorRate) {
+                errors.incrementAndGet();
+                respond(exchange, 500, "Injected server error".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+
+            if (roll < errorRate + throttleRate) {
+                errors.incrementAndGet();
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                respond(exchange, 429, "Injected rate limit".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+
+            URI uri = exchange.getRequestURI();
+            String city = uri.getPath().substring("/timeline/".length());
+            boolean current = uri.getQuery() != null && uri.getQuery().contains("include=current");
+
+            byte[] payload = payloads.computeIfAbsent(city + (current ? "#current" : "#full"), key -> current
+                ? TimelinePayloads.currentTimeline(city, city.hashCode())
+                : TimelinePayloads.fullTimeline(city, payloadDays, city.hashCode()));
+
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            respond(exchange, 200, payload);
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length);
+
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
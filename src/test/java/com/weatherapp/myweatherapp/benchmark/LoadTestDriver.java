@@ -0,0 +1,231 @@
+package com.weatherapp.myweatherapp.benchmark;
+
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.weatherapp.myweatherapp.MyweatherappApplication;
+
+/**
+ * End-to-end load test of the application against a FakeVisualCrossing server.
+ * The application is started on a free port with its upstream url pointing at the fake server, and the driver sends requests to the weather endpoints at a fixed rate.
+ * Requests are scheduled open loop and latency is measured from the intended send time, so a slow server cannot hide its queueing delay by slowing the driver down.
+ * Throughput, status codes and latency percentiles of each endpoint are printed and written as JSON.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.weatherapp.myweatherapp.benchmark.LoadTestDriver -Dexec.cleanupDaemonThreads=false -Dexec.args="rps=200 duration=30 latency=100"
+ *
+ * Options, given as key=value: rps (200), duration in seconds (30), warmup in seconds (5), latency of the fake server in ms (100),
+ * payload-days of a full timeline (15), error-rate and throttle-rate of the fake server between 0 and 1 (0), cities to spread the requests over (50),
+ * endpoints (forecast,compare-daylight,rain-check) and report file (target/loadtest-result.json).
+ * Any weather.* or server.* option is passed on to the application, e.g. weather.cache.ttl-seconds=5.
+ * The unified fetch is enabled by default, so the measured upstream calls are the shared ones; weather.visualcrossing.unified-fetch=false measures the default deployment.
+ */
+public class LoadTestDriver {
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    /**
+     * Runs the load test.
+     *
+     * @param args The options as key=value pairs.
+     */
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>(Map.of(
+            "rps", "200", "duration", "30", "warmup", "5", "latency", "100", "payload-days", "15",
+            "error-rate", "0", "throttle-rate", "0", "cities", "50",
+            "endpoints", "forecast,compare-daylight,rain-check", "report", "target/loadtest-result.json"));
+        Map<String, Object> appProperties = new LinkedHashMap<>(Map.of(
+            "server.port", "0",
+            "weather.visualcrossing.key", "loadtest",
+            "weather.visualcrossing.unified-fetch", "true",
+            "weather.store.enabled", "false",
+            "weather.quota.rate-per-second", "1000000",
+            "weather.quota.burst", "1000000",
+            "weather.quota.daily-records", "1000000000000"));
+
+        for (String arg : args) {
+            String[] pair = arg.split("=", 2);
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Expected key=value but got: " + arg);
+            }
+            if (pair[0].startsWith("weather.") || pair[0].startsWith("server.")) {
+                appProperties.put(pair[0], pair[1]);
+            } else if (options.containsKey(pair[0])) {
+                options.put(pair[0], pair[1]);
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + pair[0]);
+            }
+        }
+
+        int rps = Integer.parseInt(options.get("rps"));
+        List<String> endpoints = Arrays.asList(options.get("endpoints").split(","));
+        int cities = Integer.parseInt(options.get("cities"));
+
+        try (FakeVisualCrossing upstream = new FakeVisualCrossing(Long.parseLong(options.get("latency")), Integer.parseInt(options.get("payload-days")), Double.parseDouble(options.get("error-rate")), Double.parseDouble(options.get("throttle-rate")))) {
+            appProperties.put("weather.visualcrossing.url", upstream.url());
+
+            try (ConfigurableApplicationContext app = new SpringApplicationBuilder(MyweatherappApplication.class).run(toArguments(appProperties))) {
+                String baseUrl = "http://127.0.0.1:" + app.getEnvironment().getProperty("local.server.port");
+                HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).connectTimeout(Duration.ofSeconds(5)).build();
+
+                System.out.printf("warming up for %s s%n", options.get("warmup"));
+                run(client, baseUrl, endpoints, cities, rps, Integer.parseInt(options.get("warmup")));
+
+                long upstreamBefore = upstream.requestCount();
+                System.out.printf("running %d rps for %s s against %s (fake upstream %s)%n", rps, options.get("duration"), endpoints, upstream.url());
+                Map<String, EndpointStats> stats = run(client, baseUrl, endpoints, cities, rps, Integer.parseInt(options.get("duration")));
+
+                report(stats, upstream.requestCount() - upstreamBefore, options, appProperties);
+            }
+        }
+    }
+
+    /**
+     * Converts the application properties into command line arguments, which take precedence over application.properties.
+     */
+    static String[] toArguments(Map<String, Object> properties) {
+        return properties.entrySet().stream().map(entry -> "--" + entry.getKey() + "=" + entry.getValue()).toArray(String[]::new);
+    }
+
+    /**
+     * Sends requests at the given rate for the given time, round robin over the endpoints, and waits for the outstanding ones.
+     */
+    static Map<String, EndpointStats> run(HttpClient client, String baseUrl, List<String> endpoints, int cities, int rps, int seconds) {
+        Map<String, EndpointStats> stats = new LinkedHashMap<>();
+        endpoints.forEach(endpoint -> stats.put(endpoint, new EndpointStats()));
+
+        long total = (long) rps * seconds;
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rps;
+        Random random = new Random(42);
+        List<CompletableFuture<?>> sent = new ArrayList<>();
+        long start = System.nanoTime();
+
+        for (long i = 0; i < total; i++) {
+            long intended = start + i * intervalNanos;
+            long delay = intended - System.nanoTime();
+            if (delay > 0) {
+                LockSupport.parkNanos(delay);
+            }
+
+            String endpoint = endpoints.get((int) (i % endpoints.size()));
+            EndpointStats endpointStats = stats.get(endpoint);
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path(endpoint, random, cities))).timeout(Duration.ofSeconds(30)).GET().build();
+
+            sent.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, error) -> endpointStats.record(System.nanoTime() - intended, response == null ? -1 : response.statusCode())));
+        }
+
+        try {
+            CompletableFuture.allOf(sent.toArray(CompletableFuture[]::new)).get(60, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            //Failed requests are already counted with status -1
+        }
+
+        long elapsed = System.nanoTime() - start;
+        stats.values().forEach(endpointStats -> endpointStats.elapsedNanos = elapsed);
+
+        return stats;
+    }
+
+    /**
+     * Builds the path of a request to the endpoint for randomly chosen cities.
+     */
+    private static String path(String endpoint, Random random, int cities) {
+        String city1 = "City" + random.nextInt(cities);
+        String city2 = "City" + random.nextInt(cities);
+
+        return switch (endpoint) {
+            case "forecast" -> "/forecast/" + city1;
+            case "compare-daylight" -> "/compare-daylight/" + city1 + "/" + city2;
+            case "rain-check" -> "/rain-check/" + city1 + "/" + city2;
+            default -> throw new IllegalArgumentException("Unknown endpoint: " + endpoint);
+        };
+    }
+
+    /**
+     * Prints the results and writes them as JSON to the report file.
+     */
+    private static void report(Map<String, EndpointStats> stats, long upstreamRequests, Map<String, String> options, Map<String, Object> appProperties) throws Exception {
+        Map<String, Object> results = new LinkedHashMap<>();
+
+        System.out.printf("%-18s %9s %9s %9s %9s %9s %9s %9s %9s%n", "endpoint", "requests", "req/s", "non-2xx", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+
+        stats.forEach((endpoint, endpointStats) -> {
+            Map<String, Object> result = endpointStats.summary();
+            results.put(endpoint, result);
+
+            System.out.printf("%-18s %9d %9.1f %9d %9.1f %9.1f %9.1f %9.1f %9.1f%n", endpoint, result.get("requests"), result.get("throughput"), result.get("failed"),
+                result.get("p50Ms"), result.get("p90Ms"), result.get("p99Ms"), result.get("p99.9Ms"), result.get("maxMs"));
+        });
+
+        System.out.printf("upstream requests: %d%n", upstreamRequests);
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("options", options);
+        report.put("application", appProperties);
+        report.put("upstreamRequests", upstreamRequests);
+        report.put("endpoints", results);
+
+        File file = new File(options.get("report"));
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file, report);
+        System.out.printf("report written to %s%n", file);
+    }
+
+    /**
+     * Latencies and status codes of the requests to one endpoint.
+     */
+    static class EndpointStats {
+        private final ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+        private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        private long elapsedNanos;
+
+        void record(long latencyNanos, int status) {
+            latencies.add(latencyNanos);
+            statuses.computeIfAbsent(status, key -> new LongAdder()).increment();
+        }
+
+        Map<String, Object> summary() {
+            long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+            long failed = statuses.entrySet().stream().filter(entry -> entry.getKey() < 200 || entry.getKey() >= 300).mapToLong(entry -> entry.getValue().sum()).sum();
+            Map<String, Object> summary = new LinkedHashMap<>();
+            Map<String, Long> statusCounts = new LinkedHashMap<>();
+
+            statuses.forEach((status, count) -> statusCounts.put(String.valueOf(status), count.sum()));
+
+            summary.put("requests", (long) sorted.length);
+            summary.put("throughput", sorted.length / (elapsedNanos / 1e9));
+            summary.put("failed", failed);
+            summary.put("statuses", statusCounts);
+
+            for (double percentile : PERCENTILES) {
+                String key = "p" + (percentile == Math.rint(percentile) ? String.valueOf((int) percentile) : String.valueOf(percentile)) + "Ms";
+                summary.put(key, sorted.length == 0 ? 0.0 : sorted[Math.max(0, (int) Math.ceil(sorted.length * percentile / 100) - 1)] / 1e6);
+            }
+            summary.put("maxMs", sorted.length == 0 ? 0.0 : sorted[sorted.length - 1] / 1e6);
+
+            return summary;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.weatherapp.myweatherapp.benchmark;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.weatherapp.myweatherapp.MyweatherappApplication;
+
+/**
+ * Benchmark comparing Tomcat's platform thread pool with one virtual thread per request and per fetch, measured on the running application.
+ * For each thread model the application is started against a FakeVisualCrossing server with the forecast cache disabled, so every request blocks a Tomcat thread on RestTemplate calls made through the fetch executor.
+ * Requests are sent open loop at rising rates by the LoadTestDriver, and the maximum sustainable rate of a model is the highest rate served without errors and with a p99 latency within twice the upstream latency.
+ * The limits of the upstream guard and the connection pool are raised, so the thread model is the only bottleneck.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.weatherapp.myweatherapp.benchmark.ThreadModelBenchmark -Dexec.cleanupDaemonThreads=false -Dexec.args="latency=200 tomcat-threads=200"
+ *
+ * Options, given as key=value: latency of the fake server in ms (200), Tomcat's platform pool size (200), rates in requests per second (50,100,200,400,800,1600),
+ * duration of each rate in seconds (5), endpoint (compare-daylight) and cities to spread the requests over (100000).
+ * The virtual thread model is skipped on JVMs older than Java 21.
+ */
+public class ThreadModelBenchmark {
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args The options as key=value pairs.
+     */
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>(Map.of(
+            "latency", "200", "tomcat-threads", "200", "rates", "50,100,200,400,800,1600",
+            "duration", "5", "endpoint", "compare-daylight", "cities", "100000"));
+
+        for (String arg : args) {
+            String[] pair = arg.split("=", 2);
+            if (pair.length != 2 || !options.containsKey(pair[0])) {
+                throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+            options.put(pair[0], pair[1]);
+        }
+
+        long latencyMs = Long.parseLong(options.get("latency"));
+        int[] rates = Arrays.stream(options.get("rates").split(",")).mapToInt(Integer::parseInt).toArray();
+
+        System.out.printf("upstream latency %d ms, tomcat pool %s threads, endpoint %s, java %s%n", latencyMs, options.get("tomcat-threads"), options.get("endpoint"), Runtime.version());
+        System.out.printf("%-10s %9s %9s %9s %9s %9s%n", "model", "rps", "req/s", "non-2xx", "p50 ms", "p99 ms");
+
+        int platformMax = run("platform", false, options, rates);
+        int virtualMax = -1;
+
+        if (Runtime.version().feature() >= 21) {
+            virtualMax = run("virtual", true, options, rates);
+        } else {
+            System.out.println("virtual    skipped, virtual threads require Java 21 or later");
+        }
+
+        System.out.printf("max sustainable rate: platform=%d virtual=%s%n", platformMax, virtualMax < 0 ? "n/a" : virtualMax);
+    }
+
+    /**
+     * Starts the application with the given thread model and runs every rate against it.
+     *
+     * @return The highest rate served without errors and with a p99 latency within twice the upstream latency.
+     */
+    private static int run(String model, boolean virtualThreads, Map<String, String> options, int[] rates) throws Exception {
+        long latencyMs = Long.parseLong(options.get("latency"));
+        int seconds = Integer.parseInt(options.get("duration"));
+        int cities = Integer.parseInt(options.get("cities"));
+        List<String> endpoints = List.of(options.get("endpoint"));
+        int sustainable = 0;
+
+        try (FakeVisualCrossing upstream = new FakeVisualCrossing(latencyMs, 15, 0, 0)) {
+            Map<String, Object> appProperties = new LinkedHashMap<>();
+            appProperties.put("server.port", "0");
+            appProperties.put("server.tomcat.threads.max", options.get("tomcat-threads"));
+            appProperties.put("weather.virtual-threads.enabled", String.valueOf(virtualThreads));
+            appProperties.put("weather.visualcrossing.url", upstream.url());
+            appProperties.put("weather.visualcrossing.key", "benchmark");
+            appProperties.put("weather.visualcrossing.unified-fetch", "true");
+            appProperties.put("weather.store.enabled", "false");
+            appProperties.put("weather.cache.max-entries", "0");
+            appProperties.put("weather.upstream.max-concurrent", "100000");
+            appProperties.put("weather.upstream.breaker.slow-call-ms", "60000");
+            appProperties.put("weather.http.max-connections", "100000");
+            appProperties.put("weather.http.max-connections-per-route", "100000");
+            appProperties.put("weather.quota.rate-per-second", "1000000");
+            appProperties.put("weather.quota.burst", "1000000");
+            appProperties.put("weather.quota.daily-records", "1000000000000");
+
+            try (ConfigurableApplicationContext app = new SpringApplicationBuilder(MyweatherappApplication.class).run(LoadTestDriver.toArguments(appProperties))) {
+                String baseUrl = "http://127.0.0.1:" + app.getEnvironment().getProperty("local.server.port");
+                HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).connectTimeout(Duration.ofSeconds(5)).build();
+
+                //Warms up the JIT and the connection pools at the lowest rate
+                LoadTestDriver.run(client, baseUrl, endpoints, cities, rates[0], 2);
+
+                for (int rps : rates) {
+                    Map<String, Object> summary = LoadTestDriver.run(client, baseUrl, endpoints, cities, rps, seconds).get(endpoints.get(0)).summary();
+                    long failed = (long) summary.get("failed");
+                    double p99Ms = (double) summary.get("p99Ms");
+
+                    System.out.printf("%-10s %9d %9.1f %9d %9.1f %9.1f%n", model, rps, summary.get("throughput"), failed, summary.get("p50Ms"), p99Ms);
+
+                    if (failed == 0 && p99Ms <= 2 * latencyMs) {
+                        sustainable = rps;
+                    }
+                }
+            }
+        }
+
+        return sustainable;
+    }
+}
@@ -0,0 +1,192 @@
+package com.weatherapp.myweatherapp.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Builds Visual Crossing timeline responses shaped like the real ones, for the benchmarks to bind.
+ * A full timeline has 15 days of 24 hours each with every element Visual Crossing returns by default, a current conditions timeline has only the elements of QueryProfile.CURRENT.
+ */
+final class TimelinePayloads {
+    private static final List<String> CONDITION_CODES = List.of("type_2", "type_21", "type_27", "type_41", "type_42", "type_43");
+
+    private TimelinePayloads() {}
+
+    /**
+     * Builds the default 15 day timeline with hourly data, alerts and stations.
+     *
+     * @param address The address of the timeline.
+     * @param seed The seed of the random values, so every run binds the same bytes.
+     * @return The UTF-8 encoded JSON.
+     */
+    static byte[] fullTimeline(String address, long seed) {
+        return fullTimeline(address, 15, seed);
+    }
+
+    /**
+     * Builds a timeline with hourly data, alerts and stations spanning the given number of days, which sets the size of the payload.
+     *
+     * @param address The address of the timeline.
+     * @param dayCount The number of days of the timeline.
+     * @param seed The seed of the random values, so every run binds the same bytes.
+     * @return The UTF-8 encoded JSON.
+     */
+    static byte[] fullTimeline(String address, int dayCount, long seed) {
+        ObjectMapper mapper = new ObjectMapper();
+        Random random = new Random(seed);
+        ObjectNode root = mapper.createObjectNode();
+
+        root.put("queryCost", 1);
+        putCoordinates(root, seed);
+        root.put("resolvedAddress", address + ", England, United Kingdom");
+        root.put("address", address);
+        root.put("timezone", "Europe/London");
+        root.put("tzoffset", 1.0);
+        root.put("description", "Similar temperatures continuing with a chance of rain multiple days.");
+
+        ArrayNode days = root.putArray("days");
+        for (int d = 0; d < dayCount; d++) {
+            ObjectNode day = days.addObject();
+            day.put("datetime", LocalDate.of(2024, 5, 1).plusDays(d).toString());
+            day.put("datetimeEpoch", 1714518000L + d * 86400L);
+            addElements(day, random);
+            day.put("sunrise", "05:3" + random.nextInt(10) + ":00");
+            day.put("sunset", "20:2" + random.nextInt(10) + ":00");
+            day.put("moonphase", random.nextDouble());
+            day.put("conditions", conditions(random));
+            day.put("description", "Partly cloudy throughout the day with a chance of rain.");
+            day.put("icon", "rain");
+            day.putArray("stations").add("EGLL").add("EGLC").add("D5621");
+            day.put("source", "comb");
+
+            ArrayNode hours = day.putArray("hours");
+            for (int h = 0; h < 24; h++) {
+                ObjectNode hour = hours.addObject();
+                hour.put("datetime", String.format("%02d:00:00", h));
+                hour.put("datetimeEpoch", 1714518000L + d * 86400L + h * 3600L);
+                addElements(hour, random);
+                hour.put("conditions", conditions(random));
+                hour.put("icon", "cloudy");
+                hour.putArray("stations").add("EGLL");
+                hour.put("source", "fcst");
+            }
+        }
+
+        ArrayNode alerts = root.putArray("alerts");
+        ObjectNode alert = alerts.addObject();
+        alert.put("event", "Yellow wind warning");
+        alert.put("headline", "Strong winds expected");
+        alert.put("description", "Gusts of 50 to 60 mph are possible along exposed coasts.");
+
+        ObjectNode stations = root.putObject("stations");
+        for (String id : List.of("EGLL", "EGLC", "D5621")) {
+            ObjectNode station = stations.putObject(id);
+            station.put("distance", random.nextInt(20000));
+            station.put("latitude", 51.0 + random.nextDouble());
+            station.put("longitude", -random.nextDouble());
+            station.put("useCount", 0);
+            station.put("id", id);
+            station.put("name", id);
+            station.put("quality", 50);
+            station.put("contribution", 0.0);
+        }
+
+        root.set("currentConditions", currentConditions(mapper, random, true));
+
+        return write(mapper, root);
+    }
+
+    /**
+     * Builds the timeline returned for QueryProfile.CURRENT, which holds only the current conditions.
+     *
+     * @param address The address of the timeline.
+     * @param seed The seed of the random values.
+     * @return The UTF-8 encoded JSON.
+     */
+    static byte[] currentTimeline(String address, long seed) {
+        ObjectMapper mapper = new ObjectMapper();
+        Random random = new Random(seed);
+        ObjectNode root = mapper.createObjectNode();
+
+        root.put("queryCost", 1);
+        putCoordinates(root, seed);
+        root.put("resolvedAddress", address + ", England, United Kingdom");
+        root.put("address", address);
+        root.set("currentConditions", currentConditions(mapper, random, false));
+
+        return write(mapper, root);
+    }
+
+    /**
+     * Places the timeline at coordinates derived from the seed, so that timelines of different addresses resolve to different locations.
+     */
+    private static void putCoordinates(ObjectNode root, long seed) {
+        root.put("latitude", -60 + Math.floorMod(seed, 120_000) / 1000.0);
+        root.put("longitude", -180 + Math.floorMod(seed * 31, 360_000) / 1000.0);
+    }
+
+    private static ObjectNode currentConditions(ObjectMapper mapper, Random random, boolean allElements) {
+        ObjectNode current = mapper.createObjectNode();
+        current.put("datetime", "12:00:00");
+
+        if (allElements) {
+            current.put("datetimeEpoch", 1714561200L);
+            addElements(current, random);
+            current.put("icon", "rain");
+            current.putArray("stations").add("EGLL").add("EGLC");
+            current.put("source", "obs");
+        }
+
+        current.put("sunrise", "05:32:11");
+        current.put("sunset", "20:24:45");
+        current.put("conditions", conditions(random));
+
+        return current;
+    }
+
+    /**
+     * Adds the numeric weather elements shared by days, hours and the current conditions.
+     */
+    private static void addElements(ObjectNode node, Random random) {
+        node.put("temp", 5 + random.nextDouble() * 15);
+        node.put("tempmax", 10 + random.nextDouble() * 10);
+        node.put("tempmin", random.nextDouble() * 10);
+        node.put("feelslike", 4 + random.nextDouble() * 15);
+        node.put("humidity", 50 + random.nextDouble() * 50);
+        node.put("dew", random.nextDouble() * 10);
+        node.put("precip", random.nextDouble());
+        node.put("precipprob", random.nextInt(100));
+        node.putArray("preciptype").add("rain");
+        node.put("snow", 0);
+        node.put("snowdepth", 0);
+        node.put("windgust", random.nextDouble() * 50);
+        node.put("windspeed", random.nextDouble() * 30);
+        node.put("winddir", random.nextDouble() * 360);
+        node.put("pressure", 990 + random.nextDouble() * 40);
+        node.put("visibility", random.nextDouble() * 25);
+        node.put("cloudcover", random.nextDouble() * 100);
+        node.put("solarradiation", random.nextDouble() * 800);
+        node.put("solarenergy", random.nextDouble() * 20);
+        node.put("uvindex", random.nextInt(8));
+        node.put("severerisk", random.nextInt(30));
+    }
+
+    private static String conditions(Random random) {
+        return CONDITION_CODES.get(random.nextInt(CONDITION_CODES.size())) + ", " + CONDITION_CODES.get(random.nextInt(CONDITION_CODES.size()));
+    }
+
+    private static byte[] write(ObjectMapper mapper, ObjectNode root) {
+        try {
+            return mapper.writeValueAsString(root).getBytes(StandardCharsets.UTF_8);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.weatherapp.myweatherapp.benchmark;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.weatherapp.myweatherapp.model.CityInfo;
+import com.weatherapp.myweatherapp.repository.QueryProfile;
+import com.weatherapp.myweatherapp.repository.VisualcrossingRepository;
+import com.weatherapp.myweatherapp.service.WeatherService;
+
+/**
+ * JMH benchmark of the WeatherService compare methods against a repository answering from memory.
+ * This measures the service overhead of a request, the concurrent fetch of both cities on the fetch executor and the comparison, without any network call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WeatherServiceBenchmark {
+    private WeatherService weatherService;
+    private ExecutorService fetchExecutor;
+
+    /**
+     * Creates the service with a stubbed repository and an executor sized like the default configuration.
+     */
+    @Setup
+    public void setUp() {
+        fetchExecutor = Executors.newFixedThreadPool(32);
+        weatherService = new WeatherService();
+
+        ReflectionTestUtils.setField(weatherService, "weatherRepo", new StubRepository(Map.of(
+            "London", newCityInfo("London", "type_41, type_21", "05:32:11", "20:24:45"),
+            "Cairo", newCityInfo("Cairo", "type_43", "06:01:30", "19:45:02"))));
+        ReflectionTestUtils.setField(weatherService, "fetchExecutor", fetchExecutor);
+        ReflectionTestUtils.setField(weatherService, "fetchTimeoutMs", 10000L);
+        ReflectionTestUtils.setField(weatherService, "batchParallelism", 8);
+        ReflectionTestUtils.setField(weatherService, "batchMaxCities", 200);
+    }
+
+    /**
+     * Shuts the fetch executor down.
+     */
+    @TearDown
+    public void tearDown() {
+        fetchExecutor.shutdownNow();
+    }
+
+    /**
+     * Compares the daylight duration of two cities.
+     */
+    @Benchmark
+    public String compareDaylightHours() {
+        return weatherService.compareDaylightHours("London", "Cairo");
+    }
+
+    /**
+     * Checks the rain conditions of two cities.
+     */
+    @Benchmark
+    public String rainCheck() {
+        return weatherService.rainCheck("London", "Cairo");
+    }
+
+    private static CityInfo newCityInfo(String address, String conditions, String sunrise, String sunset) {
+        CityInfo ci = new CityInfo();
+        ci.setAddress(address);
+        ci.setConditions(conditions);
+        ci.setSunrise(sunrise);
+        ci.setSunset(sunset);
+
+        return ci;
+    }
+
+    /**
+     * Repository answering every request from a fixed map, like a fully warmed cache.
+     */
+    private static class StubRepository extends VisualcrossingRepository {
+        private final Map<String, CityInfo> cities;
+
+        StubRepository(Map<String, CityInfo> cities) {
+            super(null, null, null, null, null, null, null, null, null, false);
+            this.cities = cities;
+        }
+
+        @Override
+        public CityInfo getByCity(String city, boolean includeLangId, QueryProfile profile) {
+            return cities.get(city);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.weatherapp.myweatherapp.config;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.MockHttpOutputMessage;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.weatherapp.myweatherapp.model.CityInfo;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Unit tests for the CityInfoPayloadConverter class.
+ * These tests ensure that CityInfo bodies are written from the payload cache, compressed only for clients accepting gzip and above the threshold.
+ */
+public class CityInfoPayloadConverterTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    /**
+     * Clears the request bound to the test thread.
+     */
+    @AfterEach
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    /**
+     * Test to verify that a client accepting gzip gets the cached compressed body, which is computed only once.
+     */
+    @Test
+    @DisplayName("Should write the cached gzip body when the client accepts gzip")
+    public void write_acceptsGzip_writesCompressedBody() throws IOException {
+        CityInfoPayloadCache payloadCache = new CityInfoPayloadCache(objectMapper, true, DataSize.ofBytes(0), 100);
+        CityInfoPayloadConverter converter = new CityInfoPayloadConverter(payloadCache, objectMapper, meterRegistry);
+        CityInfo ci = newCityInfo();
+        bindRequest("deflate, gzip;q=0.8");
+
+        MockHttpOutputMessage first = new MockHttpOutputMessage();
+        converter.write(ci, MediaType.APPLICATION_JSON, first);
+        MockHttpOutputMessage second = new MockHttpOutputMessage();
+        converter.write(ci, MediaType.APPLICATION_JSON, second);
+
+        assertEquals("gzip", first.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertArrayEquals(objectMapper.writeValueAsBytes(ci), new GZIPInputStream(new ByteArrayInputStream(first.getBodyAsBytes())).readAllBytes());
+        assertArrayEquals(first.getBodyAsBytes(), second.getBodyAsBytes());
+        assertSame(payloadCache.get(ci), payloadCache.get(ci));
+        assertEquals(2, meterRegistry.get("weather.response.payload.size").tag("encoding", "gzip").summary().count());
+        assertEquals(1, payloadCache.size());
+    }
+
+    /**
+     * Test to verify that a client not accepting gzip gets the plain JSON, with Vary telling caches the body depends on the encoding.
+     */
+    @Test
+    @DisplayName("Should write the plain JSON body when the client does not accept gzip")
+    public void write_noGzip_writesPlainBody() throws IOException {
+        CityInfoPayloadConverter converter = new CityInfoPayloadConverter(new CityInfoPayloadCache(objectMapper, true, DataSize.ofBytes(0), 100), objectMapper, meterRegistry);
+        CityInfo ci = newCityInfo();
+        bindRequest("gzip;q=0");
+
+        MockHttpOutputMessage message = new MockHttpOutputMessage();
+        converter.write(ci, MediaType.APPLICATION_JSON, message);
+
+        assertNull(message.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(HttpHeaders.ACCEPT_ENCODING, message.getHeaders().getFirst(HttpHeaders.VARY));
+        assertArrayEquals(objectMapper.writeValueAsBytes(ci), message.getBodyAsBytes());
+    }
+
+    /**
+     * Test to verify that the compressed and the plain body are sent with different strong ETags, so a cache never mixes up the two representations.
+     */
+    @Test
+    @DisplayName("Should send a different ETag for the gzip and the plain body")
+    public void write_eachEncoding_hasOwnETag() throws IOException {
+        CityInfoPayloadCache payloadCache = new CityInfoPayloadCache(objectMapper, true, DataSize.ofBytes(0), 100);
+        CityInfoPayloadConverter converter = new CityInfoPayloadConverter(payloadCache, objectMapper, meterRegistry);
+        CityInfo ci = newCityInfo();
+
+        bindRequest("gzip");
+        MockHttpOutputMessage gzip = new MockHttpOutputMessage();
+        converter.write(ci, MediaType.APPLICATION_JSON, gzip);
+        bindRequest("identity");
+        MockHttpOutputMessage plain = new MockHttpOutputMessage();
+        converter.write(ci, MediaType.APPLICATION_JSON, plain);
+
+        assertEquals(payloadCache.get(ci).etag(), plain.getHeaders().getETag());
+        assertEquals(payloadCache.get(ci).gzipEtag(), gzip.getHeaders().getETag());
+        assertNotEquals(plain.getHeaders().getETag(), gzip.getHeaders().getETag());
+        assertEquals(true, gzip.getHeaders().getETag().endsWith("-gz\""));
+    }
+
+    /**
+     * Test to verify that a body below the compression threshold is never compressed.
+     */
+    @Test
+    @DisplayName("Should not compress a body below the minimum size")
+    public void write_belowThreshold_writesPlainBody() throws IOException {
+        CityInfoPayloadCache payloadCache = new CityInfoPayloadCache(objectMapper, true, DataSize.ofKilobytes(64), 100);
+        CityInfoPayloadConverter converter = new CityInfoPayloadConverter(payloadCache, objectMapper, meterRegistry);
+        CityInfo ci = newCityInfo();
+        bindRequest("gzip");
+
+        MockHttpOutputMessage message = new MockHttpOutputMessage();
+        converter.write(ci, MediaType.APPLICATION_JSON, message);
+
+        assertNull(message.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertNull(payloadCache.get(ci).gzip());
+        assertArrayEquals(objectMapper.writeValueAsBytes(ci), message.getBodyAsBytes());
+    }
+
+    /**
+     * Creates weather data that can be serialized.
+     */
+    private static CityInfo newCityInfo() {
+        CityInfo ci = new CityInfo();
+        ci.setAddress("London");
+        ci.setConditions("Rain");
+        ci.setSunrise("06:00:00");
+        ci.setSunset("18:00:00");
+
+        return ci;
+    }
+
+    /**
+     * Binds a request with the given Accept-Encoding header to the test thread.
+     */
+    private static void bindRequest(String acceptEncoding) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+}
@@ -0,0 +1,86 @@
+package com.weatherapp.myweatherapp.controller;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.junit.jupiter.api.DisplayName;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.client.HttpClientErrorException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.weatherapp.myweatherapp.config.CityInfoPayloadCache;
+import com.weatherapp.myweatherapp.model.CityInfo;
+import com.weatherapp.myweatherapp.service.WeatherService;
+
+import reactor.core.publisher.Mono;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the ReactiveWeatherController class.
+ * These tests ensure that the non-blocking controller wraps the results of the service layer in HTTP responses and passes errors through.
+ */
+@ExtendWith(MockitoExtension.class)
+public class ReactiveWeatherControllerTest {
+    //The controller being tested
+    @InjectMocks
+    ReactiveWeatherController weatherController;
+
+    //Mocked service used by the controller
+    @Mock
+    private WeatherService weatherService;
+
+    //Real caching headers builder used by the controller
+    @Spy
+    private ForecastCacheHeaders forecastCacheHeaders = new ForecastCacheHeaders(new CityInfoPayloadCache(new ObjectMapper(), true, DataSize.ofBytes(2048), 100), 600, 300);
+
+    /**
+     * Test to verify that the forecastByCity method emits the CityInfo object returned by the service.
+     */
+    @Test
+    @DisplayName("Should emit the correct CityInfo object when the city is valid")
+    public void forecastByCity_validCity_emitsCityInfo() {
+        CityInfo ci = new CityInfo();
+        ci.setAddress("London");
+
+        when(weatherService.forecastByCityAsync("London")).thenReturn(Mono.just(ci));
+
+        ResponseEntity<CityInfo> response = weatherController.forecastByCity("London").block();
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("London", response.getBody().getAddress());
+    }
+
+    /**
+     * Test to verify that the compareDaylightHours method passes service errors through for the GlobalExceptionHandler.
+     */
+    @Test
+    @DisplayName("Should fail with HttpClientErrorException when the cities are invalid")
+    public void compareDaylightHours_invalidCities_throwsHttpClientErrorException() {
+        when(weatherService.compareDaylightHoursAsync("invalidCity1", "invalidCity2")).thenReturn(Mono.error(new HttpClientErrorException(HttpStatus.BAD_REQUEST)));
+
+        HttpClientErrorException e = assertThrows(HttpClientErrorException.class, () -> weatherController.compareDaylightHours("invalidCity1", "invalidCity2").block());
+
+        assertEquals(HttpStatus.BAD_REQUEST, e.getStatusCode());
+    }
+
+    /**
+     * Test to verify that the rainCheck method emits the message returned by the service.
+     */
+    @Test
+    @DisplayName("Should emit the cities with rain when the cities are valid")
+    public void rainCheck_validCities_emitsMessage() {
+        String result = "Paris is experiencing rain.";
+
+        when(weatherService.rainCheckAsync("Paris", "Sydney")).thenReturn(Mono.just(result));
+
+        assertEquals(result, weatherController.rainCheck("Paris", "Sydney").block().getBody());
+    }
+}
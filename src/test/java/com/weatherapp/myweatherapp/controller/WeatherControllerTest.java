@@ -4,20 +4,38 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.junit.jupiter.api.DisplayName;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.unit.DataSize;
 import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.weatherapp.myweatherapp.config.CityInfoPayloadCache;
 import com.weatherapp.myweatherapp.model.CityInfo;
+import com.weatherapp.myweatherapp.model.DaylightRanking;
+import com.weatherapp.myweatherapp.model.ForecastBatch;
+import com.weatherapp.myweatherapp.model.QuotaStatus;
+import com.weatherapp.myweatherapp.model.RainStatus;
 import com.weatherapp.myweatherapp.service.WeatherService;
 
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.mockito.Mockito.*;
 
 /**
@@ -32,7 +50,11 @@ public class WeatherControllerTest {
 
     //Mocked service used by the controller
     @Mock
-    private WeatherService weatherService; 
+    private WeatherService weatherService;
+
+    //Real caching headers builder used by the controller
+    @Spy
+    private ForecastCacheHeaders forecastCacheHeaders = new ForecastCacheHeaders(new CityInfoPayloadCache(new ObjectMapper(), true, DataSize.ofBytes(2048), 100), 600, 300);
 
     /**
      * Setup method that initializes the mock HTTP request and sets it in the request context.
@@ -76,6 +98,53 @@ public class WeatherControllerTest {
         assertEquals(validCity, response.getBody().getAddress());
     }
 
+    /**
+     * Test to verify that the forecastByCity method derives the caching headers from the age of the weather data.
+     */
+    @Test
+    @DisplayName("Should set ETag, Last-Modified and a max-age reduced by the age of the data")
+    public void forecastByCity_validCity_setsCachingHeaders() {
+        CityInfo ci = new CityInfo();
+        ci.setAddress("London");
+        ci.setConditions("Rain");
+        ci.setSunrise("06:00:00");
+        ci.setSunset("18:00:00");
+        ci.setFetchedAt(System.currentTimeMillis() - 100_000);
+
+        when(weatherService.forecastByCity("London")).thenReturn(ci);
+
+        ResponseEntity<CityInfo> response = weatherController.forecastByCity("London");
+        String cacheControl = response.getHeaders().getCacheControl();
+
+        assertEquals(forecastCacheHeaders.etag(ci), response.getHeaders().getETag());
+        assertEquals(ci.getFetchedAt() / 1000 * 1000, response.getHeaders().getLastModified());
+        assertTrue(cacheControl.contains("max-age=500") || cacheControl.contains("max-age=499"), cacheControl);
+        assertTrue(cacheControl.contains("stale-while-revalidate=300"), cacheControl);
+    }
+
+    /**
+     * Test to verify that a request with the current ETag in If-None-Match is answered with 304 and no body.
+     */
+    @Test
+    @DisplayName("Should answer 304 Not Modified when If-None-Match holds the current ETag")
+    public void forecastByCity_matchingETag_returnsNotModified() throws Exception {
+        CityInfo ci = new CityInfo();
+        ci.setAddress("London");
+        ci.setConditions("Rain");
+        ci.setSunrise("06:00:00");
+        ci.setSunset("18:00:00");
+        ci.setFetchedAt(System.currentTimeMillis());
+
+        when(weatherService.forecastByCity("London")).thenReturn(ci);
+
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(weatherController).build();
+
+        mockMvc.perform(get("/forecast/London").header(HttpHeaders.IF_NONE_MATCH, forecastCacheHeaders.etag(ci)))
+            .andExpect(status().isNotModified())
+            .andExpect(header().string(HttpHeaders.ETAG, forecastCacheHeaders.etag(ci)))
+            .andExpect(content().string(""));
+    }
+
     /**
      * Test to verify that the compareDaylightHours method throws an HttpClientErrorException when invalid city names are provided.
      */
@@ -149,4 +218,81 @@ public class WeatherControllerTest {
 
         verify(weatherService, times(1)).rainCheck(validCity1, validCity2);
     }
+
+    /**
+     * Test to verify that the forecastBatch method returns the batch produced by the service layer.
+     */
+    @Test
+    @DisplayName("Should return the batch of forecasts when several cities are requested")
+    public void forecastBatch_validCities_returnsBatch() {
+        List<String> cities = List.of("London", "Paris");
+        ForecastBatch batch = new ForecastBatch();
+        CityInfo ci = new CityInfo();
+        ci.setAddress("London");
+        batch.getForecasts().put("London", ci);
+
+        when(weatherService.forecastBatch(cities)).thenReturn(batch);
+
+        ResponseEntity<ForecastBatch> response = weatherController.forecastBatch(cities);
+
+        assertEquals("London", response.getBody().getForecasts().get("London").getAddress());
+
+        verify(weatherService, times(1)).forecastBatch(cities);
+    }
+
+    /**
+     * Test to verify that the rankDaylight method returns the ranking produced by the service layer.
+     */
+    @Test
+    @DisplayName("Should return the daylight ranking when several cities are requested")
+    public void rankDaylight_validCities_returnsRanking() {
+        List<String> cities = List.of("London", "Quito");
+        DaylightRanking ranking = new DaylightRanking();
+        ranking.getRanking().add(new DaylightRanking.Entry("Quito", "Quito", 43200));
+
+        when(weatherService.rankDaylight(cities, 1)).thenReturn(ranking);
+
+        ResponseEntity<DaylightRanking> response = weatherController.rankDaylight(cities, 1);
+
+        assertEquals("Quito", response.getBody().getRanking().get(0).getCity());
+
+        verify(weatherService, times(1)).rankDaylight(cities, 1);
+    }
+
+    /**
+     * Test to verify that the rainStatus method returns the rain status produced by the service layer.
+     */
+    @Test
+    @DisplayName("Should return the rain status when several cities are requested")
+    public void rainStatus_validCities_returnsStatus() {
+        List<String> cities = List.of("London", "Cairo");
+        RainStatus status = new RainStatus();
+        status.getRaining().put("London", true);
+        status.getRaining().put("Cairo", false);
+
+        when(weatherService.rainStatus(cities)).thenReturn(status);
+
+        ResponseEntity<RainStatus> response = weatherController.rainStatus(cities);
+
+        assertEquals(true, response.getBody().getRaining().get("London"));
+
+        verify(weatherService, times(1)).rainStatus(cities);
+    }
+
+    /**
+     * Test to verify that the quotaStatus method returns the quota usage reported by the service layer.
+     */
+    @Test
+    @DisplayName("Should return the quota usage of the Visual Crossing key")
+    public void quotaStatus_returnsStatus() {
+        QuotaStatus status = new QuotaStatus(1000, 30, 5, 2, 1, "2026-01-02T00:00:00Z");
+
+        when(weatherService.quotaStatus()).thenReturn(status);
+
+        ResponseEntity<QuotaStatus> response = weatherController.quotaStatus();
+
+        assertEquals(970, response.getBody().getRemainingRecords());
+
+        verify(weatherService, times(1)).quotaStatus();
+    }
 }
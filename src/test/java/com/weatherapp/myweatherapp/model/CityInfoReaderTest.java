@@ -0,0 +1,79 @@
+package com.weatherapp.myweatherapp.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the CityInfoReader class.
+ * These tests validate that the streaming reader binds the same fields as the default JSON binding while skipping the unused parts of the timeline.
+ */
+public class CityInfoReaderTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * Test to verify that the read method binds the used fields and skips hourly data, stations, alerts and unknown fields.
+     */
+    @Test
+    @DisplayName("Should bind the used fields and skip the rest of the timeline")
+    public void read_fullTimeline_bindsUsedFieldsOnly() throws IOException {
+        String json = "{\"queryCost\":1,\"latitude\":51.5064,\"longitude\":-0.12721,\"resolvedAddress\":\"London, England, United Kingdom\",\"address\":\"London\",\"description\":\"Cooler\","
+            + "\"days\":[{\"datetime\":\"2024-05-01\",\"temp\":12.5,\"tempmax\":15,\"tempmin\":9,\"conditions\":\"Rain\",\"description\":\"Wet\","
+            + "\"hours\":[{\"datetime\":\"00:00:00\",\"temp\":10,\"stations\":[\"EGLL\"]}]},{\"datetime\":\"2024-05-02\"}],"
+            + "\"alerts\":[{\"event\":\"Wind\",\"nested\":{\"a\":[1,2,{\"b\":null}]}}],"
+            + "\"stations\":{\"EGLL\":{\"distance\":0}},"
+            + "\"currentConditions\":{\"temp\":11.5,\"feelslike\":10,\"humidity\":80,\"sunrise\":\"05:30:00\",\"sunset\":\"20:30:00\",\"conditions\":\"type_21, type_42\",\"stations\":[\"EGLL\"]}}";
+
+        CityInfo ci = read(json);
+
+        assertEquals("London", ci.getAddress());
+        assertEquals("London, England, United Kingdom", ci.getResolvedAddress());
+        assertEquals(51.5064, ci.getLatitude());
+        assertEquals(-0.12721, ci.getLongitude());
+        assertEquals("Cooler", ci.description);
+        assertEquals(11.5, ci.getTemperature());
+        assertEquals(54000, ci.getDaylightDuration());
+        assertTrue(ci.isRaining());
+        assertEquals(2, ci.days.size());
+        assertEquals("2024-05-01", ci.days.get(0).date);
+        assertEquals("12.5", ci.days.get(0).currentTemperature);
+        assertEquals("15", ci.days.get(0).maxTemperature);
+        assertEquals("Wet", ci.days.get(0).description);
+    }
+
+    /**
+     * Test to verify that the read method rejects a body that is not a JSON object.
+     */
+    @Test
+    @DisplayName("Should throw JsonParseException when the body is not a JSON object")
+    public void read_notAnObject_throwsJsonParseException() {
+        assertThrows(JsonParseException.class, () -> read("[]"));
+    }
+
+    /**
+     * Test to verify that the read method binds a malformed sunrise like the default JSON binding does, leaving it to the daylight duration to reject.
+     */
+    @Test
+    @DisplayName("Should bind a malformed sunrise and only fail the daylight duration")
+    public void read_malformedSunrise_failsDaylightDurationOnly() throws IOException {
+        CityInfo ci = read("{\"address\":\"London\",\"currentConditions\":{\"sunrise\":\"32:00\",\"sunset\":\"18:00:00\"}}");
+
+        assertEquals("London", ci.getAddress());
+        assertThrows(IllegalArgumentException.class, () -> ci.getDaylightDuration());
+    }
+
+    private CityInfo read(String json) throws IOException {
+        try (JsonParser parser = objectMapper.createParser(json)) {
+            return CityInfoReader.read(parser);
+        }
+    }
+}
@@ -3,6 +3,9 @@ package com.weatherapp.myweatherapp.model;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
@@ -97,4 +100,80 @@ public class CityInfoTest {
         boolean hasRain = ci.isRaining();
         assertEquals(true, hasRain);
     }
+
+    /**
+     * Test to verify that describeConditionCodes translates code names to text while the rain check keeps using the codes.
+     */
+    @Test
+    @DisplayName("Should translate condition codes to text and keep rain detection working")
+    public void describeConditionCodes_codes_translatedAndStillRaining() {
+        CityInfo ci = new CityInfo();
+
+        ci.setConditions("type_26, type_42");
+        ci.describeConditionCodes();
+
+        assertEquals("Light Rain, Partially cloudy", ci.getConditions());
+        assertEquals("type_26, type_42", ci.getConditionCodes());
+        assertEquals(true, ci.isRaining());
+    }
+
+    /**
+     * Test to verify that the hasCondition method reads the codes parsed during JSON binding.
+     */
+    @Test
+    @DisplayName("Should parse the condition codes once when the JSON is bound")
+    public void hasCondition_boundFromJson_returnsParsedCodes() throws Exception {
+        CityInfo ci = new ObjectMapper()
+            .readValue("{\"address\":\"London\",\"currentConditions\":{\"conditions\":\"type_42,type_26\"}}", CityInfo.class);
+
+        assertEquals(true, ci.hasCondition(42));
+        assertEquals(true, ci.hasCondition(26));
+        assertEquals(false, ci.hasCondition(2));
+        assertEquals(true, ci.isRaining());
+    }
+
+    /**
+     * Test to verify that sunrise, sunset and temperatures are parsed into primitives when the JSON is bound.
+     */
+    @Test
+    @DisplayName("Should parse sunrise, sunset and temperatures when the JSON is bound")
+    public void getDaylightDuration_boundFromJson_returnsCorrectDuration() throws Exception {
+        CityInfo ci = new ObjectMapper()
+            .readValue("{\"currentConditions\":{\"temp\":12.5,\"feelslike\":null,\"sunrise\":\"06:30:15\",\"sunset\":\"18:00\"}}", CityInfo.class);
+
+        assertEquals(41385, ci.getDaylightDuration());
+        assertEquals(12.5, ci.getTemperature());
+        assertEquals(true, Double.isNaN(ci.getFeelsLike()));
+    }
+
+    /**
+     * Test to verify that the parsed temperatures leave the serialized current conditions unchanged, as strings or null when missing.
+     */
+    @Test
+    @DisplayName("Should serialize temperatures and humidity as they were before parsing")
+    public void serialize_boundFromJson_keepsTemperatureStrings() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        CityInfo ci = objectMapper.readValue("{\"currentConditions\":{\"temp\":12.5,\"humidity\":80,\"sunrise\":\"06:30:15\",\"sunset\":\"18:00\",\"conditions\":\"Overcast\"}}", CityInfo.class);
+
+        JsonNode current = objectMapper.readTree(objectMapper.writeValueAsString(ci)).get("currentConditions");
+
+        assertEquals("12.5", current.get("temp").textValue());
+        assertEquals("80", current.get("humidity").textValue());
+        assertEquals(true, current.get("feelslike").isNull());
+        assertEquals(80.0, ci.getHumidity());
+    }
+
+    /**
+     * Test to verify that a malformed sunrise is only rejected by the daylight duration, so the other uses of the city keep working.
+     */
+    @Test
+    @DisplayName("Should bind a malformed sunrise and only fail the daylight duration")
+    public void getDaylightDuration_malformedSunriseBound_throwsIllegalArgumentException() throws Exception {
+        CityInfo ci = new ObjectMapper()
+            .readValue("{\"currentConditions\":{\"sunrise\":\"6.30am\",\"sunset\":\"18:00:00\",\"conditions\":\"type_21\"}}", CityInfo.class);
+
+        assertEquals("6.30am", ci.getSunrise());
+        assertEquals(true, ci.isRaining());
+        assertThrows(IllegalArgumentException.class, () -> ci.getDaylightDuration());
+    }
 }
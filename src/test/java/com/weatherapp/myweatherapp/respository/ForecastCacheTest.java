@@ -0,0 +1,323 @@
+package com.weatherapp.myweatherapp.respository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpServerErrorException;
+
+import com.weatherapp.myweatherapp.model.CityInfo;
+import com.weatherapp.myweatherapp.repository.ForecastCache;
+import com.weatherapp.myweatherapp.repository.QueryProfile;
+
+/**
+ * Unit tests for the ForecastCache class.
+ * These tests ensure that weather data is reused between requests for the same city and that hits and misses are counted.
+ */
+public class ForecastCacheTest {
+    /**
+     * Test to verify that a second request for the same city and language flag is a cache hit.
+     */
+    @Test
+    @DisplayName("Should load once and count a hit and a miss when the same city is requested twice")
+    public void get_sameCity_loadsOnce() {
+        ForecastCache cache = new ForecastCache(600, 100);
+        AtomicInteger loads = new AtomicInteger();
+        CityInfo ci = new CityInfo();
+
+        assertSame(ci, cache.get("London", false, QueryProfile.FULL, () -> { loads.incrementAndGet(); return ci; }));
+        assertSame(ci, cache.get("LONDON", false, QueryProfile.FULL, () -> { loads.incrementAndGet(); return ci; }));
+
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.stats().hitCount());
+        assertEquals(1, cache.stats().missCount());
+    }
+
+    /**
+     * Test to verify that the language flag is part of the cache key.
+     */
+    @Test
+    @DisplayName("Should load separately when the language flag differs")
+    public void get_differentLangId_loadsTwice() {
+        ForecastCache cache = new ForecastCache(600, 100);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get("London", false, QueryProfile.FULL, () -> { loads.incrementAndGet(); return new CityInfo(); });
+        cache.get("London", true, QueryProfile.FULL, () -> { loads.incrementAndGet(); return new CityInfo(); });
+
+        assertEquals(2, loads.get());
+    }
+
+    /**
+     * Test to verify that a full timeline serves a request for the current conditions, but not the other way round.
+     */
+    @Test
+    @DisplayName("Should serve the current profile from a cached full timeline but not the reverse")
+    public void get_widerProfileCached_servesNarrowerProfile() {
+        ForecastCache cache = new ForecastCache(600, 100);
+        AtomicInteger loads = new AtomicInteger();
+        CityInfo full = new CityInfo();
+
+        cache.get("London", false, QueryProfile.FULL, () -> { loads.incrementAndGet(); return full; });
+        assertSame(full, cache.get("London", false, QueryProfile.CURRENT, () -> { loads.incrementAndGet(); return new CityInfo(); }));
+        assertEquals(1, loads.get());
+
+        cache.get("Paris", false, QueryProfile.CURRENT, () -> { loads.incrementAndGet(); return new CityInfo(); });
+        cache.get("Paris", false, QueryProfile.FULL, () -> { loads.incrementAndGet(); return new CityInfo(); });
+        assertEquals(3, loads.get());
+    }
+
+    /**
+     * Test to verify that an entry past its time to live is served at once while it is refreshed in the background.
+     */
+    @Test
+    @DisplayName("Should serve a stale entry immediately and replace it once the background refresh completes")
+    public void get_staleEntry_servedAndRefreshed() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            ForecastCache cache = new ForecastCache(0, 60, 100, 1, executor, 6);
+            CityInfo first = new CityInfo();
+            CityInfo second = new CityInfo();
+            CountDownLatch release = new CountDownLatch(1);
+
+            assertSame(first, cache.get("London", false, QueryProfile.FULL, () -> first));
+            assertSame(first, cache.get("London", false, QueryProfile.FULL, () -> {
+                awaitQuietly(release);
+                return second;
+            }));
+            assertEquals(1, cache.staleCount());
+            assertEquals(1, cache.inFlightCount());
+
+            release.countDown();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (cache.inFlightCount() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+
+            assertSame(second, cache.get("London", false, QueryProfile.FULL, CityInfo::new));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Test to verify that a stale entry is still served at once when the refresh executor is saturated, and that the refresh is skipped rather than run on the calling thread.
+     */
+    @Test
+    @DisplayName("Should serve a stale entry without blocking and skip the refresh when the refresh executor is full")
+    public void get_staleEntryRefreshExecutorFull_servedWithoutBlocking() throws Exception {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new ArrayBlockingQueue<>(1), new ThreadPoolExecutor.AbortPolicy());
+        CountDownLatch release = new CountDownLatch(1);
+
+        try {
+            ForecastCache cache = new ForecastCache(0, 60, 100, 1, executor, 6);
+            CityInfo first = new CityInfo();
+            AtomicInteger refreshes = new AtomicInteger();
+
+            assertSame(first, cache.get("London", false, QueryProfile.FULL, () -> first));
+            executor.execute(() -> awaitQuietly(release));
+            Future<?> queued = executor.submit(() -> awaitQuietly(release));
+
+            CityInfo served = assertTimeoutPreemptively(Duration.ofSeconds(1), () -> cache.get("London", false, QueryProfile.FULL, () -> {
+                refreshes.incrementAndGet();
+                awaitQuietly(release);
+                return new CityInfo();
+            }));
+
+            assertSame(first, served);
+            assertEquals(0, refreshes.get());
+            assertEquals(0, cache.inFlightCount());
+
+            release.countDown();
+            queued.get(5, TimeUnit.SECONDS);
+            assertTrue(cache.refresh("London", false, QueryProfile.FULL, CityInfo::new));
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Test to verify that names resolving to the same location share one entry once each name has been seen, each served with the address it was requested as.
+     */
+    @Test
+    @DisplayName("Should serve aliases of a resolved location from one entry with the requested address")
+    public void get_aliasesOfSameLocation_shareEntry() {
+        ForecastCache cache = new ForecastCache(600, 100);
+        AtomicInteger loads = new AtomicInteger();
+        CityInfo london = newLocatedCityInfo("London");
+        CityInfo londonUk = newLocatedCityInfo("London,UK");
+
+        assertSame(london, cache.get("London", false, QueryProfile.FULL, () -> { loads.incrementAndGet(); return london; }));
+        assertSame(london, cache.get(" london ", false, QueryProfile.FULL, () -> { loads.incrementAndGet(); return london; }));
+        CityInfo alias = cache.get("London,  England ,United Kingdom", false, QueryProfile.FULL, () -> { loads.incrementAndGet(); return london; });
+        assertEquals("London,England,United Kingdom", alias.getAddress());
+        assertEquals(london.getResolvedAddress(), alias.getResolvedAddress());
+        assertSame(alias, cache.get("London,England,United Kingdom", false, QueryProfile.FULL, () -> { loads.incrementAndGet(); return london; }));
+        assertEquals(1, loads.get());
+
+        assertSame(londonUk, cache.get("London, UK", false, QueryProfile.FULL, () -> { loads.incrementAndGet(); return londonUk; }));
+        assertEquals("london", cache.get("london", false, QueryProfile.FULL, () -> { loads.incrementAndGet(); return london; }).getAddress());
+        assertEquals("London,UK", londonUk.getAddress());
+        assertEquals(2, loads.get());
+        assertEquals(1, cache.size());
+    }
+
+    /**
+     * Test to verify that a percent sign left in an already decoded city name is kept, rather than the name being decoded a second time.
+     */
+    @Test
+    @DisplayName("Should not decode an already decoded city name again")
+    public void get_percentInName_notDecodedAgain() {
+        ForecastCache cache = new ForecastCache(600, 100);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get("Paris%20", false, QueryProfile.FULL, () -> { loads.incrementAndGet(); return newLocatedCityInfo("Paris%20"); });
+        CityInfo ci = cache.get("Paris", false, QueryProfile.FULL, () -> { loads.incrementAndGet(); return newLocatedCityInfo("Paris"); });
+
+        assertEquals("Paris", ci.getAddress());
+        assertEquals(2, loads.get());
+    }
+
+    /**
+     * Test to verify that empty results are not cached.
+     */
+    @Test
+    @DisplayName("Should not cache a null result")
+    public void get_nullResult_notCached() {
+        ForecastCache cache = new ForecastCache(600, 100);
+        AtomicInteger loads = new AtomicInteger();
+
+        assertNull(cache.get("Atlantis", false, QueryProfile.FULL, () -> { loads.incrementAndGet(); return null; }));
+        assertNull(cache.get("Atlantis", false, QueryProfile.FULL, () -> { loads.incrementAndGet(); return null; }));
+
+        assertEquals(2, loads.get());
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * Test to verify that concurrent misses for the same city share a single load.
+     */
+    @Test
+    @DisplayName("Should coalesce concurrent requests for the same city into one load")
+    public void get_concurrentSameCity_loadsOnce() throws Exception {
+        ForecastCache cache = new ForecastCache(600, 100);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        CityInfo ci = new CityInfo();
+        int callers = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+
+        try {
+            List<Future<CityInfo>> results = new ArrayList<>();
+
+            for (int i = 0; i < callers; i++) {
+                results.add(executor.submit(() -> cache.get("London", false, QueryProfile.FULL, () -> {
+                    loads.incrementAndGet();
+                    awaitQuietly(release);
+                    return ci;
+                })));
+            }
+
+            //Wait until every other caller has joined the in-flight load before letting it finish
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (cache.coalescedCount() < callers - 1 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            for (Future<CityInfo> result : results) {
+                assertSame(ci, result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals(callers - 1, cache.coalescedCount());
+        assertEquals(0, cache.inFlightCount());
+    }
+
+    /**
+     * Test to verify that a failed load is rethrown to the waiting callers and not cached.
+     */
+    @Test
+    @DisplayName("Should share the failure of an in-flight load and not cache it")
+    public void get_failedLoad_rethrownAndNotCached() throws Exception {
+        ForecastCache cache = new ForecastCache(600, 100);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            Future<CityInfo> leader = executor.submit(() -> cache.get("London", false, QueryProfile.FULL, () -> {
+                awaitQuietly(release);
+                throw new HttpServerErrorException(HttpStatus.BAD_GATEWAY);
+            }));
+
+            while (cache.inFlightCount() == 0) {
+                Thread.sleep(5);
+            }
+
+            Future<CityInfo> follower = executor.submit(() -> cache.get("London", false, QueryProfile.FULL, CityInfo::new));
+
+            while (cache.coalescedCount() == 0) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            ExecutionException e1 = assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS));
+            ExecutionException e2 = assertThrows(ExecutionException.class, () -> follower.get(5, TimeUnit.SECONDS));
+
+            assertTrue(e1.getCause() instanceof HttpServerErrorException);
+            assertTrue(e2.getCause() instanceof HttpServerErrorException);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * Creates weather data resolved by Visual Crossing to central London.
+     */
+    private static CityInfo newLocatedCityInfo(String address) {
+        CityInfo ci = new CityInfo();
+        ci.setAddress(address);
+        ci.setResolvedAddress("London, England, United Kingdom");
+        ci.setLatitude(51.5064);
+        ci.setLongitude(-0.12721);
+
+        return ci;
+    }
+
+    /**
+     * Waits on the latch, giving up after a few seconds so a broken test cannot hang the build.
+     */
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
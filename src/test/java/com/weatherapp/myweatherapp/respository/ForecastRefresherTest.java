@@ -0,0 +1,90 @@
+package com.weatherapp.myweatherapp.respository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.weatherapp.myweatherapp.model.CityInfo;
+import com.weatherapp.myweatherapp.repository.ForecastCache;
+import com.weatherapp.myweatherapp.repository.ForecastRefresher;
+import com.weatherapp.myweatherapp.repository.QueryProfile;
+import com.weatherapp.myweatherapp.repository.VisualcrossingRepository;
+
+/**
+ * Unit tests for the ForecastRefresher class.
+ * These tests ensure that only the most requested cities are refreshed ahead of their expiry.
+ */
+@ExtendWith(MockitoExtension.class)
+public class ForecastRefresherTest {
+    // Mocked repository refreshing the cities
+    @Mock
+    private VisualcrossingRepository weatherRepo;
+
+    // Executor running the background refreshes of the cache
+    private ExecutorService executor;
+
+    /**
+     * Setup method to create the refresh executor before each test.
+     */
+    @BeforeEach
+    public void setUp() {
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    /**
+     * Stops the refresh executor after each test.
+     */
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Test to verify that the most requested city due for a refresh is refreshed and the less requested one is not.
+     */
+    @Test
+    @DisplayName("Should refresh the top requested cities that expire soon")
+    public void refreshHotCities_expiringEntries_refreshesTopN() {
+        ForecastCache cache = new ForecastCache(0, 60, 100, 1, executor, 6);
+        cache.get("London", false, QueryProfile.FULL, CityInfo::new);
+        cache.get("London", false, QueryProfile.FULL, CityInfo::new);
+        cache.get("Paris", false, QueryProfile.FULL, CityInfo::new);
+
+        when(weatherRepo.refresh("london", false, QueryProfile.FULL)).thenReturn(true);
+
+        ForecastRefresher refresher = new ForecastRefresher(cache, weatherRepo, 1, 30);
+
+        assertEquals(1, refresher.refreshHotCities());
+        verify(weatherRepo, never()).refresh("paris", false, QueryProfile.FULL);
+    }
+
+    /**
+     * Test to verify that a top-N of 0 disables the proactive refresh.
+     */
+    @Test
+    @DisplayName("Should not refresh anything when disabled")
+    public void refreshHotCities_disabled_refreshesNothing() {
+        ForecastCache cache = new ForecastCache(0, 60, 100, 1, executor, 6);
+        cache.get("London", false, QueryProfile.FULL, CityInfo::new);
+
+        ForecastRefresher refresher = new ForecastRefresher(cache, weatherRepo, 0, 30);
+
+        assertEquals(0, refresher.refreshHotCities());
+        verify(weatherRepo, never()).refresh(anyString(), anyBoolean(), any());
+    }
+}
@@ -0,0 +1,156 @@
+package com.weatherapp.myweatherapp.respository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.weatherapp.myweatherapp.model.CityInfo;
+import com.weatherapp.myweatherapp.repository.ForecastCache;
+import com.weatherapp.myweatherapp.repository.ForecastStore;
+import com.weatherapp.myweatherapp.repository.QueryProfile;
+
+/**
+ * Unit tests for the ForecastStore class.
+ * These tests ensure that stored weather data survives a restart and that only fresh entries are served from it.
+ */
+public class ForecastStoreTest {
+    @TempDir
+    Path dir;
+
+    /**
+     * Test to verify that an appended forecast is restored into a new cache, as after a restart, without calling the loader.
+     */
+    @Test
+    @DisplayName("Should serve a stored forecast from the cache after a restart")
+    public void load_appendedForecast_restoredIntoCache() throws InterruptedException {
+        Path file = dir.resolve("store.jsonl");
+        CityInfo ci = new CityInfo();
+        ci.setAddress("London");
+        ci.setSunrise("05:30:00");
+        ci.setSunset("20:30:00");
+        ci.setConditions("type_21");
+
+        ForecastStore store = newStore(new ForecastCache(600, 100), file, 100);
+        store.append(" London ", true, QueryProfile.CURRENT, ci);
+        store.close();
+
+        ForecastCache restarted = new ForecastCache(600, 100);
+        assertEquals(1, newStore(restarted, file, 100).load());
+
+        AtomicInteger loads = new AtomicInteger();
+        CityInfo restored = restarted.get("london", true, QueryProfile.CURRENT, () -> { loads.incrementAndGet(); return new CityInfo(); });
+
+        assertEquals(0, loads.get());
+        assertEquals("London", restored.getAddress());
+        assertEquals(54000, restored.getDaylightDuration());
+        assertTrue(restored.isRaining());
+    }
+
+    /**
+     * Test to verify that expired and unreadable lines are dropped and the latest entry of a city wins.
+     */
+    @Test
+    @DisplayName("Should skip expired and unreadable lines and keep the latest entry of each city")
+    public void load_staleAndCorruptLines_keepsLatestFreshEntry() throws IOException {
+        Path file = dir.resolve("store.jsonl");
+        long now = System.currentTimeMillis();
+        Files.write(file, List.of(
+            "{\"city\":\"paris\",\"includeLangId\":false,\"profile\":\"FULL\",\"fetchedAt\":" + (now - 3_600_000) + ",\"data\":{\"address\":\"Old Paris\"}}",
+            "not json",
+            "{\"city\":\"london\",\"includeLangId\":false,\"profile\":\"FULL\",\"fetchedAt\":" + (now - 2000) + ",\"data\":{\"address\":\"Old London\"}}",
+            "{\"city\":\"london\",\"includeLangId\":false,\"profile\":\"FULL\",\"fetchedAt\":" + (now - 1000) + ",\"data\":{\"address\":\"London\"}}"
+        ), StandardCharsets.UTF_8);
+
+        ForecastCache cache = new ForecastCache(600, 100);
+
+        assertEquals(1, newStore(cache, file, 100).load());
+        assertEquals("London", cache.get("London", false, QueryProfile.FULL, CityInfo::new).getAddress());
+        assertEquals(1, Files.readAllLines(file).size());
+    }
+
+    /**
+     * Test to verify that the file is compacted once enough lines were appended.
+     */
+    @Test
+    @DisplayName("Should compact the file to one line per city after the configured number of appends")
+    public void append_pastCompactionThreshold_compactsFile() throws IOException {
+        Path file = dir.resolve("store.jsonl");
+        ForecastStore store = newStore(new ForecastCache(600, 100), file, 3);
+        CityInfo ci = new CityInfo();
+
+        store.append("London", false, QueryProfile.FULL, ci);
+        store.append("London", false, QueryProfile.FULL, ci);
+        store.flush();
+        assertEquals(2, Files.readAllLines(file).size());
+
+        store.append("London", false, QueryProfile.FULL, ci);
+        store.flush();
+        assertEquals(1, Files.readAllLines(file).size());
+    }
+
+    /**
+     * Test to verify that appends from many threads at once are written by the writer thread as whole lines, none of them lost.
+     */
+    @Test
+    @DisplayName("Should write every line appended concurrently once flushed")
+    public void append_concurrentCallers_writesEveryLine() throws Exception {
+        Path file = dir.resolve("store.jsonl");
+        ForecastStore store = newStore(new ForecastCache(600, 100), file, 1000);
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+
+        try {
+            for (int i = 0; i < 200; i++) {
+                String city = "City" + i;
+                callers.execute(() -> store.append(city, false, QueryProfile.FULL, new CityInfo()));
+            }
+            callers.shutdown();
+            assertTrue(callers.awaitTermination(5, TimeUnit.SECONDS));
+
+            store.flush();
+            List<String> lines = Files.readAllLines(file);
+
+            assertEquals(200, lines.size());
+            assertTrue(lines.stream().allMatch(line -> line.startsWith("{") && line.endsWith("}")));
+        } finally {
+            callers.shutdownNow();
+            store.close();
+        }
+    }
+
+    /**
+     * Test to verify that a disabled store neither writes nor restores anything.
+     */
+    @Test
+    @DisplayName("Should not touch the disk when disabled")
+    public void append_disabled_writesNothing() {
+        Path file = dir.resolve("store.jsonl");
+        ForecastCache cache = new ForecastCache(600, 100);
+        ForecastStore store = new ForecastStore(cache, new ObjectMapper(), false, file.toString(), 100);
+        CityInfo ci = new CityInfo();
+
+        store.append("London", false, QueryProfile.FULL, ci);
+
+        assertEquals(0, store.load());
+        assertTrue(Files.notExists(file));
+        assertSame(ci, cache.get("London", false, QueryProfile.FULL, () -> ci));
+    }
+
+    private static ForecastStore newStore(ForecastCache cache, Path file, int compactAfter) {
+        return new ForecastStore(cache, new ObjectMapper(), true, file.toString(), compactAfter);
+    }
+}
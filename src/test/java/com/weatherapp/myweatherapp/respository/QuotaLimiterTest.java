@@ -0,0 +1,94 @@
+package com.weatherapp.myweatherapp.respository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+
+import com.weatherapp.myweatherapp.model.QuotaStatus;
+import com.weatherapp.myweatherapp.repository.QuotaLimiter;
+
+/**
+ * Unit tests for the QuotaLimiter class.
+ * These tests ensure that bursts are paced, that background requests are shed before interactive ones, and that the daily quota is accounted in records.
+ */
+public class QuotaLimiterTest {
+    /**
+     * Test to verify that requests within the burst are allowed at once and the next interactive one is told to wait for a token.
+     */
+    @Test
+    @DisplayName("Should allow the burst at once and delay the next interactive request")
+    public void reserve_burstExceeded_interactiveWaits() {
+        QuotaLimiter limiter = new QuotaLimiter(10, 2, 1000, 1000, 0);
+
+        assertEquals(Duration.ZERO, limiter.reserve(QuotaLimiter.Priority.INTERACTIVE, 1));
+        assertEquals(Duration.ZERO, limiter.reserve(QuotaLimiter.Priority.INTERACTIVE, 1));
+
+        Duration wait = limiter.reserve(QuotaLimiter.Priority.INTERACTIVE, 1);
+
+        assertTrue(wait.toMillis() > 0 && wait.toMillis() <= 100);
+        assertEquals(3, limiter.status().getAllowedRequests());
+    }
+
+    /**
+     * Test to verify that a background request is shed instead of waiting when no token is available.
+     */
+    @Test
+    @DisplayName("Should shed a background request with 429 and Retry-After when the bucket is empty")
+    public void reserve_bucketEmpty_backgroundShed() {
+        QuotaLimiter limiter = new QuotaLimiter(0.1, 1, 1000, 1000, 0);
+
+        limiter.reserve(QuotaLimiter.Priority.INTERACTIVE, 1);
+
+        HttpClientErrorException e = assertThrows(HttpClientErrorException.class, () -> limiter.reserve(QuotaLimiter.Priority.BACKGROUND, 1));
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, e.getStatusCode());
+        assertEquals("10", e.getResponseHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertEquals(1, limiter.status().getShedRequests());
+    }
+
+    /**
+     * Test to verify that background requests stop at the reserve while interactive requests may use the rest of the daily quota.
+     */
+    @Test
+    @DisplayName("Should keep the reserved part of the daily quota for interactive requests")
+    public void reserve_reserveReached_onlyInteractiveAllowed() {
+        QuotaLimiter limiter = new QuotaLimiter(1000, 1000, 0, 30, 50);
+
+        limiter.reserve(QuotaLimiter.Priority.BACKGROUND, 15);
+
+        assertThrows(HttpClientErrorException.class, () -> limiter.reserve(QuotaLimiter.Priority.BACKGROUND, 1));
+
+        limiter.reserve(QuotaLimiter.Priority.INTERACTIVE, 15);
+        QuotaStatus status = limiter.status();
+
+        assertEquals(30, status.getConsumedRecords());
+        assertEquals(0, status.getRemainingRecords());
+        assertThrows(HttpClientErrorException.class, () -> limiter.reserve(QuotaLimiter.Priority.INTERACTIVE, 1));
+    }
+
+    /**
+     * Test to verify that a 429 from Visual Crossing pauses all requests for the time given in its Retry-After header.
+     */
+    @Test
+    @DisplayName("Should pause requests for the Retry-After of an upstream 429")
+    public void onUpstreamThrottled_retryAfter_pausesRequests() {
+        QuotaLimiter limiter = new QuotaLimiter(1000, 1000, 500, 1000, 0);
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, "5");
+
+        limiter.onUpstreamThrottled(headers);
+
+        HttpClientErrorException e = assertThrows(HttpClientErrorException.class, () -> limiter.reserve(QuotaLimiter.Priority.INTERACTIVE, 1));
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, e.getStatusCode());
+        assertEquals(0, limiter.status().getAllowedRequests());
+    }
+}
@@ -0,0 +1,232 @@
+package com.weatherapp.myweatherapp.respository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import reactor.core.publisher.Mono;
+
+import com.weatherapp.myweatherapp.repository.UpstreamGuard;
+
+/**
+ * Unit tests for the UpstreamGuard class.
+ * These tests ensure that transient errors are retried, that the circuit opens and recovers, and that the bulkhead bounds the calls in flight.
+ */
+public class UpstreamGuardTest {
+    /**
+     * Test to verify that a server error is retried and the following success is returned.
+     */
+    @Test
+    @DisplayName("Should retry a server error and return the next successful attempt")
+    public void call_serverErrorThenSuccess_retries() {
+        UpstreamGuard guard = newGuard(2, 10, 100);
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = guard.call(() -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new HttpServerErrorException(HttpStatus.BAD_GATEWAY);
+            }
+            return "London";
+        });
+
+        assertEquals("London", result);
+        assertEquals(2, attempts.get());
+        assertEquals(1, guard.retryCount());
+    }
+
+    /**
+     * Test to verify that a client error is thrown straight away without retrying.
+     */
+    @Test
+    @DisplayName("Should not retry a client error")
+    public void call_clientError_notRetried() {
+        UpstreamGuard guard = newGuard(2, 10, 100);
+        AtomicInteger attempts = new AtomicInteger();
+
+        HttpClientErrorException e = assertThrows(HttpClientErrorException.class, () -> guard.call(() -> {
+            attempts.incrementAndGet();
+            throw new HttpClientErrorException(HttpStatus.BAD_REQUEST);
+        }));
+
+        assertEquals(HttpStatus.BAD_REQUEST, e.getStatusCode());
+        assertEquals(1, attempts.get());
+    }
+
+    /**
+     * Test to verify that a server error other than 502, 503 and 504 is thrown straight away without retrying.
+     */
+    @Test
+    @DisplayName("Should not retry a 501 Not Implemented")
+    public void call_notImplemented_notRetried() {
+        UpstreamGuard guard = newGuard(2, 10, 100);
+        AtomicInteger attempts = new AtomicInteger();
+
+        HttpServerErrorException e = assertThrows(HttpServerErrorException.class, () -> guard.call(() -> {
+            attempts.incrementAndGet();
+            throw new HttpServerErrorException(HttpStatus.NOT_IMPLEMENTED);
+        }));
+
+        assertEquals(HttpStatus.NOT_IMPLEMENTED, e.getStatusCode());
+        assertEquals(1, attempts.get());
+        assertEquals(0, guard.retryCount());
+    }
+
+    /**
+     * Test to verify that a read timeout is thrown straight away without retrying, since it already took as long as the caller waits.
+     */
+    @Test
+    @DisplayName("Should not retry a read timeout")
+    public void call_readTimeout_notRetried() {
+        UpstreamGuard guard = newGuard(2, 10, 100);
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(ResourceAccessException.class, () -> guard.call(() -> {
+            attempts.incrementAndGet();
+            throw new ResourceAccessException("I/O error", new SocketTimeoutException("Read timed out"));
+        }));
+
+        assertEquals(1, attempts.get());
+        assertEquals(0, guard.retryCount());
+    }
+
+    /**
+     * Test to verify that a retry rejected by the circuit the failed attempt opened ends with the upstream failure rather than the 503 of the rejection.
+     */
+    @Test
+    @DisplayName("Should throw the upstream failure when the circuit rejects its retry")
+    public void call_retryRejected_throwsUpstreamFailure() {
+        UpstreamGuard guard = newGuard(2, 1, 10000);
+        AtomicInteger attempts = new AtomicInteger();
+
+        HttpServerErrorException e = assertThrows(HttpServerErrorException.class, () -> guard.call(() -> {
+            attempts.incrementAndGet();
+            throw new HttpServerErrorException(HttpStatus.BAD_GATEWAY);
+        }));
+
+        assertEquals(HttpStatus.BAD_GATEWAY, e.getStatusCode());
+        assertEquals(1, attempts.get());
+        assertEquals("OPEN", guard.circuitState());
+        assertEquals(1, guard.rejectedCount());
+    }
+
+    /**
+     * Test to verify that the circuit opens once the failure rate reaches its threshold, rejecting calls without making them, and closes after a successful trial call.
+     */
+    @Test
+    @DisplayName("Should fail fast with 503 while the circuit is open and close it after a successful trial")
+    public void call_failureRateReached_opensAndRecovers() throws InterruptedException {
+        UpstreamGuard guard = newGuard(0, 4, 100);
+        AtomicInteger attempts = new AtomicInteger();
+
+        for (int i = 0; i < 4; i++) {
+            assertThrows(HttpServerErrorException.class, () -> guard.call(() -> {
+                attempts.incrementAndGet();
+                throw new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR);
+            }));
+        }
+        assertEquals("OPEN", guard.circuitState());
+
+        HttpServerErrorException e = assertThrows(HttpServerErrorException.class, () -> guard.call(() -> attempts.incrementAndGet()));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatusCode());
+        assertEquals(4, attempts.get());
+
+        Thread.sleep(150);
+        assertEquals("HALF_OPEN", guard.circuitState());
+        assertEquals(5, guard.call(() -> attempts.incrementAndGet()));
+        assertEquals("CLOSED", guard.circuitState());
+    }
+
+    /**
+     * Test to verify that a call is rejected with 503 while the bulkhead is full.
+     */
+    @Test
+    @DisplayName("Should reject a call with 503 when the bulkhead is full")
+    public void call_bulkheadFull_rejected() throws Exception {
+        UpstreamGuard guard = new UpstreamGuard(1, 10, 0, 0, 0, 50, 50, 100, 60000, 100, 30000);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            executor.submit(() -> guard.call(() -> {
+                started.countDown();
+                awaitQuietly(release);
+                return "London";
+            }));
+            started.await(5, TimeUnit.SECONDS);
+
+            HttpServerErrorException e = assertThrows(HttpServerErrorException.class, () -> guard.call(() -> "Paris"));
+            assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatusCode());
+            assertEquals(1, guard.rejectedCount());
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Test to verify that the non-blocking call retries a server error like the blocking one.
+     */
+    @Test
+    @DisplayName("Should retry a server error of a non-blocking call")
+    public void callAsync_serverErrorThenSuccess_retries() {
+        UpstreamGuard guard = newGuard(2, 10, 100);
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = guard.callAsync(() -> attempts.incrementAndGet() == 1 ? Mono.<String>error(new HttpServerErrorException(HttpStatus.BAD_GATEWAY)) : Mono.just("London")).block();
+
+        assertEquals("London", result);
+        assertEquals(2, attempts.get());
+        assertEquals(0, guard.inFlightCount());
+    }
+
+    /**
+     * Test to verify that the non-blocking call also ends with the upstream failure when the circuit rejects its retry.
+     */
+    @Test
+    @DisplayName("Should emit the upstream failure when the circuit rejects the retry of a non-blocking call")
+    public void callAsync_retryRejected_emitsUpstreamFailure() {
+        UpstreamGuard guard = newGuard(2, 1, 10000);
+        AtomicInteger attempts = new AtomicInteger();
+
+        HttpServerErrorException e = assertThrows(HttpServerErrorException.class, () -> guard.callAsync(() -> {
+            attempts.incrementAndGet();
+            return Mono.<String>error(new HttpServerErrorException(HttpStatus.BAD_GATEWAY));
+        }).block());
+
+        assertEquals(HttpStatus.BAD_GATEWAY, e.getStatusCode());
+        assertEquals(1, attempts.get());
+        assertEquals(0, guard.inFlightCount());
+    }
+
+    /**
+     * Creates a guard opening its circuit at a 50% failure rate over the given window, with a short backoff and open time.
+     */
+    private static UpstreamGuard newGuard(int maxRetries, int windowSize, long openMs) {
+        return new UpstreamGuard(8, 100, maxRetries, 5, 20, windowSize, windowSize, 50, 60000, 100, openMs);
+    }
+
+    /**
+     * Waits on the latch, giving up after a few seconds so a broken test cannot hang the build.
+     */
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -2,11 +2,20 @@ package com.weatherapp.myweatherapp.respository;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -14,11 +23,29 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import io.micrometer.core.instrument.observation.DefaultMeterObservationHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.tck.TestObservationRegistry;
+import io.micrometer.observation.tck.TestObservationRegistryAssert;
+import reactor.core.publisher.Mono;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.weatherapp.myweatherapp.model.CityInfo;
+import com.weatherapp.myweatherapp.repository.ForecastCache;
+import com.weatherapp.myweatherapp.repository.ForecastStore;
+import com.weatherapp.myweatherapp.repository.QueryProfile;
+import com.weatherapp.myweatherapp.repository.QuotaLimiter;
+import com.weatherapp.myweatherapp.repository.UpstreamGuard;
 import com.weatherapp.myweatherapp.repository.VisualcrossingRepository;
 
 /**
@@ -31,6 +58,12 @@ public class VisualcrossingRepositoryTest {
     @Mock
     private RestTemplate restTemplate;
 
+    // Registry collecting the upstream call timings
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    // Registry reporting the observations of the repository as timers to the meter registry
+    private final ObservationRegistry observationRegistry = ObservationRegistry.create();
+
     // The repository being tested
     private VisualcrossingRepository repository;
 
@@ -40,6 +73,7 @@ public class VisualcrossingRepositoryTest {
     @BeforeEach
     public void setUp() {
         MockitoAnnotations.openMocks(this);
+        observationRegistry.observationConfig().observationHandler(new DefaultMeterObservationHandler(meterRegistry));
     }
 
     /**
@@ -48,7 +82,7 @@ public class VisualcrossingRepositoryTest {
     @Test
     @DisplayName("Should throw HttpClientErrorException when city name is invalid")
     public void getByCity_invalidCity_throwsClientErrorException() {
-        repository = new VisualcrossingRepository(restTemplate, "https://test-url.com/", "test_key"); 
+        repository = newRepository("https://test-url.com/", "test_key"); 
 
         String invalidCity = "invalidCity";
         String validKey = "?key=test_key";
@@ -61,6 +95,7 @@ public class VisualcrossingRepositoryTest {
 
         assertEquals(HttpStatus.NOT_FOUND, e.getStatusCode());
         assertEquals("404 NOT_FOUND", e.getMessage());
+        assertEquals(1, meterRegistry.get("weather.upstream.requests").tag("includeLangId", "false").tag("outcome", "CLIENT_ERROR").timer().count());
 
         verify(restTemplate, times(1)).getForObject(url, CityInfo.class);
     }
@@ -71,7 +106,7 @@ public class VisualcrossingRepositoryTest {
     @Test
     @DisplayName("Should throw HttpClientErrorException when API key is invalid")
     public void getByCity_invalidAPIKey_throwsClientErrorException() {
-        repository = new VisualcrossingRepository(restTemplate, "https://test-url.com/", "invalid_key"); 
+        repository = newRepository("https://test-url.com/", "invalid_key"); 
 
         String validcity = "London";
         String invalidKey = "?key=invalid_key";
@@ -93,7 +128,7 @@ public class VisualcrossingRepositoryTest {
     @Test
     @DisplayName("Should return correct CityInfo object when API key and city name are valid")
     public void getByCity_validCityAndAPIKey_returnsCityInfoObj() {
-        repository = new VisualcrossingRepository(restTemplate, "https://test-url.com/", "test_key"); 
+        repository = newRepository("https://test-url.com/", "test_key"); 
 
         String validCity = "London";
         String validKey = "?key=test_key";
@@ -112,4 +147,271 @@ public class VisualcrossingRepositoryTest {
         verify(restTemplate, times(1)).getForObject(url, CityInfo.class);
     }
 
+    /**
+     * Test to verify that the getByCity method serves repeated requests for the same city from the cache.
+     */
+    @Test
+    @DisplayName("Should only call the API once when the same city is requested twice")
+    public void getByCity_repeatedCity_servedFromCache() {
+        repository = newRepository("https://test-url.com/", "test_key");
+
+        String url = "https://test-url.com/timeline/London?key=test_key";
+
+        CityInfo mockResponse = new CityInfo();
+        mockResponse.setAddress("London");
+
+        when(restTemplate.getForObject(url, CityInfo.class)).thenReturn(mockResponse);
+
+        assertEquals("London", repository.getByCity("London", false).getAddress());
+        assertEquals("London", repository.getByCity(" london ", false).getAddress());
+
+        verify(restTemplate, times(1)).getForObject(url, CityInfo.class);
+    }
+
+    /**
+     * Test to verify that the current profile only requests the current conditions and the elements the daylight and rain checks use.
+     */
+    @Test
+    @DisplayName("Should restrict the query to the current conditions for the current profile")
+    public void getByCity_currentProfile_requestsTrimmedTimeline() {
+        repository = newRepository("https://test-url.com/", "test_key");
+
+        String url = "https://test-url.com/timeline/London?key=test_key&include=current&elements=datetime,sunrise,sunset,conditions&lang=id";
+
+        CityInfo mockResponse = new CityInfo();
+        mockResponse.setAddress("London");
+
+        when(restTemplate.getForObject(url, CityInfo.class)).thenReturn(mockResponse);
+
+        assertEquals("London", repository.getByCity("London", true, QueryProfile.CURRENT).getAddress());
+
+        verify(restTemplate, times(1)).getForObject(url, CityInfo.class);
+    }
+
+    /**
+     * Test to verify that in unified mode the default and code name requests share one API call and still expose both forms of the conditions.
+     */
+    @Test
+    @DisplayName("Should fetch once with lang=id and translate the conditions when unified fetching is enabled")
+    public void getByCity_unifiedFetch_sharesOneCall() {
+        ForecastCache cache = new ForecastCache(600, 100);
+        repository = new VisualcrossingRepository(restTemplate, WebClient.create(), cache, disabledStore(cache), newGuard(), newLimiter(), observationRegistry, "https://test-url.com/", "test_key", true);
+
+        String url = "https://test-url.com/timeline/London?key=test_key&lang=id";
+
+        CityInfo mockResponse = new CityInfo();
+        mockResponse.setAddress("London");
+        mockResponse.setConditions("type_21, type_41");
+
+        when(restTemplate.getForObject(url, CityInfo.class)).thenReturn(mockResponse);
+
+        CityInfo forecast = repository.getByCity("London", false);
+        CityInfo rainCheck = repository.getByCity("London", true);
+
+        assertEquals("Rain, Overcast", forecast.getConditions());
+        assertEquals("type_21, type_41", rainCheck.getConditionCodes());
+        assertEquals(true, rainCheck.isRaining());
+
+        verify(restTemplate, times(1)).getForObject(url, CityInfo.class);
+    }
+
+    /**
+     * Test to verify that the getByCityAsync method deserializes a successful response without blocking.
+     */
+    @Test
+    @DisplayName("Should emit the CityInfo object when the non-blocking call succeeds")
+    public void getByCityAsync_validCity_emitsCityInfoObj() {
+        repository = newAsyncRepository(ClientResponse.create(HttpStatus.OK)
+            .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+            .body("{\"address\":\"London\",\"currentConditions\":{\"conditions\":\"type_21\"}}")
+            .build());
+
+        CityInfo ci = repository.getByCityAsync("London", true).block();
+
+        assertNotNull(ci);
+        assertEquals("London", ci.getAddress());
+        assertEquals(true, ci.isRaining());
+    }
+
+    /**
+     * Test to verify that the getByCityAsync method fails with the same HttpClientErrorException as the blocking call.
+     */
+    @Test
+    @DisplayName("Should fail with HttpClientErrorException when the non-blocking call returns 404")
+    public void getByCityAsync_invalidCity_throwsClientErrorException() {
+        repository = newAsyncRepository(ClientResponse.create(HttpStatus.NOT_FOUND).build());
+
+        HttpClientErrorException e = assertThrows(HttpClientErrorException.class, () -> repository.getByCityAsync("invalidCity", false).block());
+
+        assertEquals(HttpStatus.NOT_FOUND, e.getStatusCode());
+    }
+
+    /**
+     * Test to verify that the city name is cleaned up before it is sent to the API.
+     */
+    @Test
+    @DisplayName("Should send the tidied city name to the API")
+    public void getByCity_untidyCity_requestsTidiedName() {
+        repository = newRepository("https://test-url.com/", "test_key");
+
+        String url = "https://test-url.com/timeline/London,UK?key=test_key";
+        when(restTemplate.getForObject(url, CityInfo.class)).thenReturn(new CityInfo());
+
+        assertNotNull(repository.getByCity("  London ,  UK ", false));
+
+        verify(restTemplate, times(1)).getForObject(url, CityInfo.class);
+    }
+
+    /**
+     * Test to verify that each lookup is observed with the city and its cache outcome, with the upstream call observed as its child.
+     */
+    @Test
+    @DisplayName("Should observe a cache miss with the upstream call as its child, then a cache hit")
+    public void getByCity_repeatedCity_observesMissThenHit() {
+        TestObservationRegistry testRegistry = TestObservationRegistry.create();
+        ForecastCache cache = new ForecastCache(600, 100);
+        repository = new VisualcrossingRepository(restTemplate, WebClient.create(), cache, disabledStore(cache), newGuard(), newLimiter(), testRegistry, "https://test-url.com/", "test_key", false);
+
+        when(restTemplate.getForObject("https://test-url.com/timeline/London?key=test_key", CityInfo.class)).thenReturn(new CityInfo());
+
+        repository.getByCity("London", false);
+        repository.getByCity("London", false);
+
+        TestObservationRegistryAssert.assertThat(testRegistry)
+            .hasNumberOfObservationsWithNameEqualTo("weather.lookup", 2)
+            .hasNumberOfObservationsWithNameEqualTo("weather.upstream.requests", 1)
+            .hasAnObservationWithAKeyValue("cache", "miss")
+            .hasAnObservationWithAKeyValue("cache", "hit")
+            .hasObservationWithNameEqualTo("weather.upstream.requests").that()
+                .hasLowCardinalityKeyValue("outcome", "SUCCESS")
+                .hasHighCardinalityKeyValue("city", "London")
+                .hasParentObservationContextMatching(parent -> "weather.lookup".equals(parent.getName()));
+    }
+
+    /**
+     * Test to verify that the background refresh of a stale entry takes its token with background priority, so it is shed at once when the bucket is empty instead of waiting like a user request, and the lookup is still observed as a hit.
+     */
+    @Test
+    @DisplayName("Should shed the refresh of a stale entry at once when the bucket is empty")
+    public void getByCity_staleEntryBucketEmpty_refreshShed() throws InterruptedException {
+        ExecutorService refreshExecutor = Executors.newSingleThreadExecutor();
+        TestObservationRegistry testRegistry = TestObservationRegistry.create();
+        ForecastCache cache = new ForecastCache(0, 60, 100, 1, refreshExecutor, 6);
+        QuotaLimiter limiter = new QuotaLimiter(0.5, 1, 5000, 1_000_000, 0);
+        repository = new VisualcrossingRepository(restTemplate, WebClient.create(), cache, disabledStore(cache), newGuard(), limiter, testRegistry, "https://test-url.com/", "test_key", false);
+
+        CityInfo first = new CityInfo();
+        when(restTemplate.getForObject("https://test-url.com/timeline/London?key=test_key", CityInfo.class)).thenReturn(first);
+
+        assertSame(first, repository.getByCity("London", false));
+        assertSame(first, repository.getByCity("London", false));
+
+        refreshExecutor.shutdown();
+        assertTrue(refreshExecutor.awaitTermination(1, TimeUnit.SECONDS));
+        assertEquals(1, limiter.status().getShedRequests());
+        verify(restTemplate, times(1)).getForObject("https://test-url.com/timeline/London?key=test_key", CityInfo.class);
+        TestObservationRegistryAssert.assertThat(testRegistry)
+            .hasAnObservationWithAKeyValue("cache", "miss")
+            .hasAnObservationWithAKeyValue("cache", "hit");
+    }
+
+    /**
+     * Test to verify that a request shed by the QuotaLimiter fails with 429 and a Retry-After header without calling the API.
+     */
+    @Test
+    @DisplayName("Should fail with 429 and not call the API when the daily quota is exhausted")
+    public void getByCity_quotaExhausted_throwsTooManyRequests() {
+        ForecastCache cache = new ForecastCache(600, 100);
+        repository = new VisualcrossingRepository(restTemplate, WebClient.create(), cache, disabledStore(cache), newGuard(), new QuotaLimiter(1000, 1000, 0, 10, 0), observationRegistry, "https://test-url.com/", "test_key", false);
+
+        HttpClientErrorException e = assertThrows(HttpClientErrorException.class, () -> repository.getByCity("London", false));
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, e.getStatusCode());
+        assertNotNull(e.getResponseHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        verify(restTemplate, never()).getForObject(anyString(), eq(CityInfo.class));
+    }
+
+    /**
+     * Test to verify that every attempt sent to the API is charged against the daily quota, the retry of a server error included.
+     */
+    @Test
+    @DisplayName("Should charge the quota once per upstream attempt when a server error is retried")
+    public void getByCity_retriedServerError_chargesEveryAttempt() {
+        ForecastCache cache = new ForecastCache(600, 100);
+        QuotaLimiter limiter = newLimiter();
+        UpstreamGuard retryingGuard = new UpstreamGuard(64, 500, 1, 0, 0, 50, 50, 100, 60000, 100, 30000);
+        repository = new VisualcrossingRepository(restTemplate, WebClient.create(), cache, disabledStore(cache), retryingGuard, limiter, observationRegistry, "https://test-url.com/", "test_key", false);
+
+        when(restTemplate.getForObject("https://test-url.com/timeline/London?key=test_key", CityInfo.class))
+            .thenThrow(new HttpServerErrorException(HttpStatus.BAD_GATEWAY))
+            .thenReturn(new CityInfo());
+
+        repository.getByCity("London", false);
+
+        verify(restTemplate, times(2)).getForObject("https://test-url.com/timeline/London?key=test_key", CityInfo.class);
+        assertEquals(1, retryingGuard.retryCount());
+        assertEquals(2 * QueryProfile.FULL.recordCost(), limiter.status().getConsumedRecords());
+    }
+
+    /**
+     * Test to verify that a call rejected by an open circuit breaker is not charged against the daily quota.
+     */
+    @Test
+    @DisplayName("Should not charge the quota for a call the circuit breaker rejects")
+    public void getByCity_circuitOpen_chargesNothing() {
+        ForecastCache cache = new ForecastCache(600, 100);
+        QuotaLimiter limiter = newLimiter();
+        UpstreamGuard trippingGuard = new UpstreamGuard(64, 500, 0, 0, 0, 1, 1, 100, 60000, 100, 30000);
+        repository = new VisualcrossingRepository(restTemplate, WebClient.create(), cache, disabledStore(cache), trippingGuard, limiter, observationRegistry, "https://test-url.com/", "test_key", false);
+
+        when(restTemplate.getForObject("https://test-url.com/timeline/London?key=test_key", CityInfo.class)).thenThrow(new HttpServerErrorException(HttpStatus.BAD_GATEWAY));
+
+        assertThrows(HttpServerErrorException.class, () -> repository.getByCity("London", false));
+        HttpServerErrorException e = assertThrows(HttpServerErrorException.class, () -> repository.getByCity("London", false));
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatusCode());
+        verify(restTemplate, times(1)).getForObject("https://test-url.com/timeline/London?key=test_key", CityInfo.class);
+        assertEquals(QueryProfile.FULL.recordCost(), limiter.status().getConsumedRecords());
+    }
+
+    /**
+     * Creates a repository whose WebClient answers every request with the given response.
+     */
+    private VisualcrossingRepository newAsyncRepository(ClientResponse response) {
+        WebClient webClient = WebClient.builder().exchangeFunction(request -> Mono.just(response)).build();
+
+        ForecastCache cache = new ForecastCache(600, 100);
+
+        return new VisualcrossingRepository(restTemplate, webClient, cache, disabledStore(cache), newGuard(), newLimiter(), observationRegistry, "https://test-url.com/", "test_key", false);
+    }
+
+    /**
+     * Creates the repository being tested with an empty cache.
+     */
+    private VisualcrossingRepository newRepository(String url, String key) {
+        ForecastCache cache = new ForecastCache(600, 100);
+
+        return new VisualcrossingRepository(restTemplate, WebClient.create(), cache, disabledStore(cache), newGuard(), newLimiter(), observationRegistry, url, key, false);
+    }
+
+    /**
+     * Creates an upstream guard that does not retry and never opens its circuit.
+     */
+    private static UpstreamGuard newGuard() {
+        return new UpstreamGuard(64, 500, 0, 0, 0, 50, 50, 100, 60000, 100, 30000);
+    }
+
+    /**
+     * Creates a quota limiter whose rate and quota the tests never reach.
+     */
+    private static QuotaLimiter newLimiter() {
+        return new QuotaLimiter(1000, 1000, 0, 1_000_000, 0);
+    }
+
+    /**
+     * Creates a forecast store that persists nothing, so tests never touch the disk.
+     */
+    private static ForecastStore disabledStore(ForecastCache cache) {
+        return new ForecastStore(cache, new ObjectMapper(), false, "unused.jsonl", 100);
+    }
 }
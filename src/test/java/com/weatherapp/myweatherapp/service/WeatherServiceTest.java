@@ -1,20 +1,41 @@
 package com.weatherapp.myweatherapp.service;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+
 import com.weatherapp.myweatherapp.model.CityInfo;
+import com.weatherapp.myweatherapp.model.DaylightRanking;
+import com.weatherapp.myweatherapp.model.ForecastBatch;
+import com.weatherapp.myweatherapp.model.RainStatus;
+import com.weatherapp.myweatherapp.repository.QueryProfile;
 import com.weatherapp.myweatherapp.repository.VisualcrossingRepository;
 
+import reactor.core.publisher.Mono;
+
 /**
  * Unit tests for the WeatherService class.
  * These tests ensure that the service methods correctly handle city data, daylight duration and rain conditions.
@@ -29,6 +50,25 @@ class WeatherServiceTest {
   @InjectMocks 
   private WeatherService weatherService;
 
+  /**
+   * Setup method that gives the service a real executor for its parallel fetches.
+   */
+  @BeforeEach
+  public void setUp() {
+    weatherService.fetchExecutor = Executors.newFixedThreadPool(4);
+    weatherService.fetchTimeoutMs = 5000;
+    weatherService.batchParallelism = 2;
+    weatherService.batchMaxCities = 3;
+  }
+
+  /**
+   * Teardown method that stops the executor threads.
+   */
+  @AfterEach
+  public void tearDown() {
+    weatherService.fetchExecutor.shutdownNow();
+  }
+
   /**
    * Test to verify that the forecastByCity method throws IllegalArgumentException when an invalid city is provided.
    */
@@ -38,13 +78,13 @@ class WeatherServiceTest {
     String invalidCity = "invalidCity";
     boolean langid = false;
 
-    when(weatherRepository.getByCity(invalidCity, langid)).thenReturn(null);
+    when(weatherRepository.getByCity(invalidCity, langid, QueryProfile.FULL)).thenReturn(null);
 
     IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> weatherService.forecastByCity(invalidCity));
 
     assertEquals("City data could not be found for: " + invalidCity, e.getMessage());
 
-    verify(weatherRepository, times(1)).getByCity(invalidCity, langid);
+    verify(weatherRepository, times(1)).getByCity(invalidCity, langid, QueryProfile.FULL);
   }
 
   /**
@@ -59,13 +99,13 @@ class WeatherServiceTest {
     CityInfo ci = new CityInfo();
     ci.setAddress(validCity);
 
-    when(weatherRepository.getByCity(validCity, langid)).thenReturn(ci);
+    when(weatherRepository.getByCity(validCity, langid, QueryProfile.FULL)).thenReturn(ci);
 
     CityInfo ci_response = weatherService.forecastByCity(validCity);
 
     assertEquals(validCity, ci_response.getAddress());
 
-    verify(weatherRepository, times(1)).getByCity(validCity, false);
+    verify(weatherRepository, times(1)).getByCity(validCity, false, QueryProfile.FULL);
   }
 
   /**
@@ -78,13 +118,14 @@ class WeatherServiceTest {
     String invalidCity2 = "invalidCity2";
     boolean langId = false;
 
-    when(weatherRepository.getByCity(invalidCity1, langId)).thenThrow(new IllegalArgumentException("City data could not be found for: " + invalidCity1));
+    when(weatherRepository.getByCity(invalidCity1, langId, QueryProfile.CURRENT)).thenThrow(new IllegalArgumentException("City data could not be found for: " + invalidCity1));
+    lenient().when(weatherRepository.getByCity(invalidCity2, langId, QueryProfile.CURRENT)).thenReturn(null);
 
     IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> weatherService.compareDaylightHours(invalidCity1, invalidCity2));
 
     assertEquals("City data could not be found for: " + invalidCity1, e.getMessage());
 
-    verify(weatherRepository, times(1)).getByCity(invalidCity1, langId);
+    verify(weatherRepository, times(1)).getByCity(invalidCity1, langId, QueryProfile.CURRENT);
   }
 
   /**
@@ -103,8 +144,8 @@ class WeatherServiceTest {
     ci1.setAddress(validCity1);
     ci2.setAddress(validCity2);
 
-    when(weatherRepository.getByCity(validCity1, langId)).thenReturn(ci1);
-    when(weatherRepository.getByCity(validCity2, langId)).thenReturn(ci2);
+    when(weatherRepository.getByCity(validCity1, langId, QueryProfile.CURRENT)).thenReturn(ci1);
+    when(weatherRepository.getByCity(validCity2, langId, QueryProfile.CURRENT)).thenReturn(ci2);
 
     when(ci1.getDaylightDuration()).thenReturn(9000L);  
     when(ci2.getDaylightDuration()).thenReturn(10000L); 
@@ -116,8 +157,8 @@ class WeatherServiceTest {
     verify(ci1, times(1)).getDaylightDuration(); 
     verify(ci2, times(1)).getDaylightDuration();
 
-    verify(weatherRepository, times(1)).getByCity(validCity1, langId);
-    verify(weatherRepository, times(1)).getByCity(validCity2, langId);
+    verify(weatherRepository, times(1)).getByCity(validCity1, langId, QueryProfile.CURRENT);
+    verify(weatherRepository, times(1)).getByCity(validCity2, langId, QueryProfile.CURRENT);
   }
 
   /**
@@ -136,8 +177,8 @@ class WeatherServiceTest {
     ci1.setAddress(validCity1);
     ci2.setAddress(validCity2);
 
-    when(weatherRepository.getByCity(validCity1, langId)).thenReturn(ci1);
-    when(weatherRepository.getByCity(validCity2, langId)).thenReturn(ci2);
+    when(weatherRepository.getByCity(validCity1, langId, QueryProfile.CURRENT)).thenReturn(ci1);
+    when(weatherRepository.getByCity(validCity2, langId, QueryProfile.CURRENT)).thenReturn(ci2);
 
     when(ci1.getDaylightDuration()).thenReturn(9000L);  
     when(ci2.getDaylightDuration()).thenReturn(9000L); 
@@ -146,8 +187,8 @@ class WeatherServiceTest {
 
     assertEquals("Both cities have the same daylight duration.", result);
 
-    verify(weatherRepository, times(1)).getByCity(validCity1, langId);
-    verify(weatherRepository, times(1)).getByCity(validCity2, langId);
+    verify(weatherRepository, times(1)).getByCity(validCity1, langId, QueryProfile.CURRENT);
+    verify(weatherRepository, times(1)).getByCity(validCity2, langId, QueryProfile.CURRENT);
 
     verify(ci1, times(1)).getDaylightDuration(); 
     verify(ci2, times(1)).getDaylightDuration();
@@ -163,13 +204,14 @@ class WeatherServiceTest {
     String invalidCity2 = "invalidCity2";
     boolean langId = true;
 
-    when(weatherRepository.getByCity(invalidCity1, langId)).thenThrow(new IllegalArgumentException("City data could not be found for: " + invalidCity1));
+    when(weatherRepository.getByCity(invalidCity1, langId, QueryProfile.CURRENT)).thenThrow(new IllegalArgumentException("City data could not be found for: " + invalidCity1));
+    lenient().when(weatherRepository.getByCity(invalidCity2, langId, QueryProfile.CURRENT)).thenReturn(null);
 
     IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> weatherService.rainCheck(invalidCity1, invalidCity2));
 
     assertEquals("City data could not be found for: " + invalidCity1, e.getMessage());
 
-    verify(weatherRepository, times(1)).getByCity(invalidCity1, langId);
+    verify(weatherRepository, times(1)).getByCity(invalidCity1, langId, QueryProfile.CURRENT);
   }
 
   /**
@@ -188,8 +230,8 @@ class WeatherServiceTest {
     ci1.setAddress(validCity1);
     ci2.setAddress(validCity2);
 
-    when(weatherRepository.getByCity(validCity1, langId)).thenReturn(ci1);
-    when(weatherRepository.getByCity(validCity2, langId)).thenReturn(ci2);
+    when(weatherRepository.getByCity(validCity1, langId, QueryProfile.CURRENT)).thenReturn(ci1);
+    when(weatherRepository.getByCity(validCity2, langId, QueryProfile.CURRENT)).thenReturn(ci2);
 
     when(ci1.isRaining()).thenReturn(true);  
     when(ci2.isRaining()).thenReturn(true); 
@@ -198,8 +240,8 @@ class WeatherServiceTest {
 
     assertEquals(ci1.getAddress() + " and " + ci2.getAddress() + " are experiencing rain.", result);
 
-    verify(weatherRepository, times(1)).getByCity(validCity1, langId);
-    verify(weatherRepository, times(1)).getByCity(validCity2, langId);
+    verify(weatherRepository, times(1)).getByCity(validCity1, langId, QueryProfile.CURRENT);
+    verify(weatherRepository, times(1)).getByCity(validCity2, langId, QueryProfile.CURRENT);
 
     verify(ci1, times(1)).isRaining(); 
     verify(ci2, times(1)).isRaining();
@@ -221,8 +263,8 @@ class WeatherServiceTest {
     ci1.setAddress(validCity1);
     ci2.setAddress(validCity2);
 
-    when(weatherRepository.getByCity(validCity1, langId)).thenReturn(ci1);
-    when(weatherRepository.getByCity(validCity2, langId)).thenReturn(ci2);
+    when(weatherRepository.getByCity(validCity1, langId, QueryProfile.CURRENT)).thenReturn(ci1);
+    when(weatherRepository.getByCity(validCity2, langId, QueryProfile.CURRENT)).thenReturn(ci2);
 
     when(ci1.isRaining()).thenReturn(false);  
     when(ci2.isRaining()).thenReturn(true); 
@@ -231,8 +273,8 @@ class WeatherServiceTest {
 
     assertEquals(ci2.getAddress() + " is experiencing rain.", result);
 
-    verify(weatherRepository, times(1)).getByCity(validCity1, langId);
-    verify(weatherRepository, times(1)).getByCity(validCity2, langId);
+    verify(weatherRepository, times(1)).getByCity(validCity1, langId, QueryProfile.CURRENT);
+    verify(weatherRepository, times(1)).getByCity(validCity2, langId, QueryProfile.CURRENT);
 
     verify(ci1, times(1)).isRaining(); 
     verify(ci2, times(1)).isRaining();
@@ -254,8 +296,8 @@ class WeatherServiceTest {
     ci1.setAddress(validCity1);
     ci2.setAddress(validCity2);
 
-    when(weatherRepository.getByCity(validCity1, langId)).thenReturn(ci1);
-    when(weatherRepository.getByCity(validCity2, langId)).thenReturn(ci2);
+    when(weatherRepository.getByCity(validCity1, langId, QueryProfile.CURRENT)).thenReturn(ci1);
+    when(weatherRepository.getByCity(validCity2, langId, QueryProfile.CURRENT)).thenReturn(ci2);
 
     when(ci1.isRaining()).thenReturn(false);  
     when(ci2.isRaining()).thenReturn(false); 
@@ -264,10 +306,373 @@ class WeatherServiceTest {
 
     assertEquals("It is not raining in either city.", result);
 
-    verify(weatherRepository, times(1)).getByCity(validCity1, langId);
-    verify(weatherRepository, times(1)).getByCity(validCity2, langId);
+    verify(weatherRepository, times(1)).getByCity(validCity1, langId, QueryProfile.CURRENT);
+    verify(weatherRepository, times(1)).getByCity(validCity2, langId, QueryProfile.CURRENT);
 
     verify(ci1, times(1)).isRaining(); 
     verify(ci2, times(1)).isRaining();
   }
-}
\ No newline at end of file
+
+  /**
+   * Test to verify that the compareDaylightHours method rethrows the failure of the second city unchanged when it fails.
+   */
+  @Test
+  @DisplayName("Should rethrow the second city's HttpClientErrorException when only the second city is invalid")
+  public void compareDaylightHours_secondCityInvalid_throwsHttpClientErrorException() {
+    String validCity = "London";
+    String invalidCity = "invalidCity";
+    boolean langId = false;
+
+    lenient().when(weatherRepository.getByCity(validCity, langId, QueryProfile.CURRENT)).thenReturn(new CityInfo());
+    when(weatherRepository.getByCity(invalidCity, langId, QueryProfile.CURRENT)).thenThrow(new HttpClientErrorException(HttpStatus.BAD_REQUEST));
+
+    HttpClientErrorException e = assertThrows(HttpClientErrorException.class, () -> weatherService.compareDaylightHours(validCity, invalidCity));
+
+    assertEquals(HttpStatus.BAD_REQUEST, e.getStatusCode());
+  }
+
+  /**
+   * Test to verify that the rainCheck method fetches both cities at the same time rather than one after the other.
+   */
+  @Test
+  @DisplayName("Should fetch both cities in parallel")
+  public void rainCheck_validCities_fetchesCitiesInParallel() {
+    String validCity1 = "London";
+    String validCity2 = "Manchester";
+    boolean langId = true;
+    CountDownLatch bothStarted = new CountDownLatch(2);
+
+    CityInfo ci1 = mock(CityInfo.class);
+    CityInfo ci2 = mock(CityInfo.class);
+
+    when(weatherRepository.getByCity(validCity1, langId, QueryProfile.CURRENT)).thenAnswer(invocation -> awaitSibling(bothStarted, ci1));
+    when(weatherRepository.getByCity(validCity2, langId, QueryProfile.CURRENT)).thenAnswer(invocation -> awaitSibling(bothStarted, ci2));
+
+    when(ci1.isRaining()).thenReturn(false);
+    when(ci2.isRaining()).thenReturn(false);
+
+    assertEquals("It is not raining in either city.", weatherService.rainCheck(validCity1, validCity2));
+  }
+
+  /**
+   * Test to verify that the compareDaylightHours method responds with 504 Gateway Timeout when the fetches take longer than the timeout.
+   */
+  @Test
+  @DisplayName("Should throw HttpServerErrorException with 504 when the fetches time out")
+  public void compareDaylightHours_slowUpstream_throwsGatewayTimeout() {
+    String validCity1 = "London";
+    String validCity2 = "Tokyo";
+    boolean langId = false;
+    CountDownLatch never = new CountDownLatch(3);
+
+    weatherService.fetchTimeoutMs = 100;
+
+    when(weatherRepository.getByCity(validCity1, langId, QueryProfile.CURRENT)).thenAnswer(invocation -> awaitSibling(never, new CityInfo()));
+    when(weatherRepository.getByCity(validCity2, langId, QueryProfile.CURRENT)).thenAnswer(invocation -> awaitSibling(never, new CityInfo()));
+
+    HttpServerErrorException e = assertThrows(HttpServerErrorException.class, () -> weatherService.compareDaylightHours(validCity1, validCity2));
+
+    assertEquals(HttpStatus.GATEWAY_TIMEOUT, e.getStatusCode());
+  }
+
+  /**
+   * Test to verify that the rainCheck method interrupts the fetch of the other city as soon as one city fails, instead of leaving it running.
+   */
+  @Test
+  @DisplayName("Should interrupt the sibling fetch when one city fails")
+  public void rainCheck_oneCityFails_interruptsSiblingFetch() throws InterruptedException {
+    String slowCity = "London";
+    String invalidCity = "invalidCity";
+    boolean langId = true;
+    CountDownLatch slowStarted = new CountDownLatch(1);
+    CountDownLatch interrupted = new CountDownLatch(1);
+
+    when(weatherRepository.getByCity(slowCity, langId, QueryProfile.CURRENT)).thenAnswer(invocation -> {
+      slowStarted.countDown();
+      try {
+        Thread.sleep(10000);
+      } catch (InterruptedException e) {
+        interrupted.countDown();
+      }
+      return new CityInfo();
+    });
+    when(weatherRepository.getByCity(invalidCity, langId, QueryProfile.CURRENT)).thenAnswer(invocation -> {
+      slowStarted.await(2, TimeUnit.SECONDS);
+      throw new HttpClientErrorException(HttpStatus.BAD_REQUEST);
+    });
+
+    assertThrows(HttpClientErrorException.class, () -> weatherService.rainCheck(slowCity, invalidCity));
+    assertTrue(interrupted.await(2, TimeUnit.SECONDS));
+  }
+
+  /**
+   * Test to verify that the compareDaylightHours method responds with 503 Service Unavailable when the fetch executor rejects the fetches, rather than running them on the calling thread.
+   */
+  @Test
+  @DisplayName("Should throw HttpServerErrorException with 503 when the fetch executor is full")
+  public void compareDaylightHours_executorFull_throwsServiceUnavailable() {
+    weatherService.fetchExecutor.shutdownNow();
+    weatherService.fetchExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new SynchronousQueue<>(), new ThreadPoolExecutor.AbortPolicy());
+    CountDownLatch release = new CountDownLatch(1);
+
+    weatherService.fetchExecutor.submit(() -> {
+      release.await();
+      return null;
+    });
+
+    try {
+      HttpServerErrorException e = assertThrows(HttpServerErrorException.class, () -> weatherService.compareDaylightHours("London", "Tokyo"));
+
+      assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatusCode());
+      verify(weatherRepository, never()).getByCity("London", false, QueryProfile.CURRENT);
+    } finally {
+      release.countDown();
+    }
+  }
+
+  /**
+   * Test to verify that the forecastByCityAsync method fails with IllegalArgumentException when no data is returned for the city.
+   */
+  @Test
+  @DisplayName("Should fail with IllegalArgumentException when the non-blocking fetch is empty")
+  public void forecastByCityAsync_invalidCity_throwsIllegalArgumentException() {
+    String invalidCity = "invalidCity";
+
+    when(weatherRepository.getByCityAsync(invalidCity, false, QueryProfile.FULL)).thenReturn(Mono.empty());
+
+    IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> weatherService.forecastByCityAsync(invalidCity).block());
+
+    assertEquals("City data could not be found for: " + invalidCity, e.getMessage());
+  }
+
+  /**
+   * Test to verify that the compareDaylightHoursAsync method produces the same message as the blocking method.
+   */
+  @Test
+  @DisplayName("Should return the city with the longer daylight duration without blocking")
+  public void compareDaylightHoursAsync_validCities_returnsCorrectCity() {
+    CityInfo ci1 = mock(CityInfo.class);
+    CityInfo ci2 = mock(CityInfo.class);
+
+    when(weatherRepository.getByCityAsync("London", false, QueryProfile.CURRENT)).thenReturn(Mono.just(ci1));
+    when(weatherRepository.getByCityAsync("Tokyo", false, QueryProfile.CURRENT)).thenReturn(Mono.just(ci2));
+
+    when(ci1.getDaylightDuration()).thenReturn(10000L);
+    when(ci2.getDaylightDuration()).thenReturn(9000L);
+    when(ci1.getAddress()).thenReturn("London");
+
+    assertEquals("London has the longer daylight duration.", weatherService.compareDaylightHoursAsync("London", "Tokyo").block());
+  }
+
+  /**
+   * Test to verify that the rainCheckAsync method fails with the upstream error of either city.
+   */
+  @Test
+  @DisplayName("Should fail with HttpClientErrorException when one of the non-blocking fetches fails")
+  public void rainCheckAsync_invalidCity_throwsHttpClientErrorException() {
+    when(weatherRepository.getByCityAsync("London", true, QueryProfile.CURRENT)).thenReturn(Mono.never());
+    when(weatherRepository.getByCityAsync("invalidCity", true, QueryProfile.CURRENT)).thenReturn(Mono.error(new HttpClientErrorException(HttpStatus.BAD_REQUEST)));
+
+    HttpClientErrorException e = assertThrows(HttpClientErrorException.class, () -> weatherService.rainCheckAsync("London", "invalidCity").block());
+
+    assertEquals(HttpStatus.BAD_REQUEST, e.getStatusCode());
+  }
+
+  /**
+   * Test to verify that the forecastBatch method fetches repeated cities once and reports failing cities without failing the batch.
+   */
+  @Test
+  @DisplayName("Should dedupe cities and report per-city errors in the batch")
+  public void forecastBatch_mixedCities_returnsForecastsAndErrors() {
+    CityInfo london = new CityInfo();
+    london.setAddress("London");
+
+    when(weatherRepository.getByCity("London", false, QueryProfile.FULL)).thenReturn(london);
+    when(weatherRepository.getByCity("invalidCity", false, QueryProfile.FULL)).thenThrow(new HttpClientErrorException(HttpStatus.BAD_REQUEST, "Bad API Request: Invalid location parameter value."));
+    when(weatherRepository.getByCity("Atlantis", false, QueryProfile.FULL)).thenReturn(null);
+
+    ForecastBatch batch = weatherService.forecastBatch(List.of("London", " london", "invalidCity", "Atlantis"));
+
+    assertEquals(List.of("London"), List.copyOf(batch.getForecasts().keySet()));
+    assertEquals(400, batch.getErrors().get("invalidCity").getStatus());
+    assertEquals("City data could not be found for: Atlantis", batch.getErrors().get("Atlantis").getMessage());
+
+    verify(weatherRepository, times(1)).getByCity("London", false, QueryProfile.FULL);
+  }
+
+  /**
+   * Test to verify that the forecastBatch method rejects more distinct cities than the configured maximum.
+   */
+  @Test
+  @DisplayName("Should throw IllegalArgumentException when too many cities are requested")
+  public void forecastBatch_tooManyCities_throwsIllegalArgumentException() {
+    IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> weatherService.forecastBatch(List.of("a", "b", "c", "d")));
+
+    assertEquals("At most 3 cities can be requested at once, but 4 were given.", e.getMessage());
+  }
+
+  /**
+   * Test to verify that the rankDaylight method orders the cities by daylight duration, keeps the top cities and reports failures.
+   */
+  @Test
+  @DisplayName("Should rank the top cities by daylight duration and report per-city errors")
+  public void rankDaylight_validAndInvalidCities_returnsTopCities() {
+    CityInfo london = new CityInfo();
+    london.setAddress("London");
+    london.setSunrise("07:00:00");
+    london.setSunset("17:00:00");
+
+    CityInfo oslo = new CityInfo();
+    oslo.setAddress("Oslo");
+    oslo.setSunrise("09:00:00");
+    oslo.setSunset("15:00:00");
+
+    CityInfo quito = new CityInfo();
+    quito.setAddress("Quito");
+    quito.setSunrise("06:00:00");
+    quito.setSunset("18:00:00");
+
+    when(weatherRepository.getByCity("London", false, QueryProfile.CURRENT)).thenReturn(london);
+    when(weatherRepository.getByCity("Oslo", false, QueryProfile.CURRENT)).thenReturn(oslo);
+    when(weatherRepository.getByCity("Quito", false, QueryProfile.CURRENT)).thenReturn(quito);
+
+    weatherService.batchMaxCities = 4;
+    when(weatherRepository.getByCity("invalidCity", false, QueryProfile.CURRENT)).thenThrow(new HttpClientErrorException(HttpStatus.BAD_REQUEST));
+
+    DaylightRanking ranking = weatherService.rankDaylight(List.of("London", "Oslo", "Quito", "invalidCity"), 2);
+
+    assertEquals(2, ranking.getRanking().size());
+    assertEquals("Quito", ranking.getRanking().get(0).getAddress());
+    assertEquals(43200, ranking.getRanking().get(0).getDaylightSeconds());
+    assertEquals("London", ranking.getRanking().get(1).getAddress());
+    assertEquals(400, ranking.getErrors().get("invalidCity").getStatus());
+  }
+
+  /**
+   * Test to verify that the fetch timeout of a batch applies to each city from the start of its fetch, so cities delayed by the quota limiter one after another all complete.
+   */
+  @Test
+  @DisplayName("Should apply the fetch timeout per city when the limiter delays the cities of a batch")
+  public void rankDaylight_citiesDelayedByLimiter_timeoutPerCity() {
+    weatherService.fetchTimeoutMs = 300;
+    weatherService.batchParallelism = 1;
+    weatherService.batchMaxCities = 4;
+
+    for (String city : List.of("London", "Oslo", "Quito", "Lima")) {
+      when(weatherRepository.getByCity(city, false, QueryProfile.CURRENT)).thenAnswer(invocation -> {
+        //Waits for a token like a rate limited fetch would
+        Thread.sleep(150);
+        CityInfo ci = new CityInfo();
+        ci.setAddress(city);
+        ci.setSunrise("07:00:00");
+        ci.setSunset("17:00:00");
+        return ci;
+      });
+    }
+
+    DaylightRanking ranking = weatherService.rankDaylight(List.of("London", "Oslo", "Quito", "Lima"), null);
+
+    assertEquals(4, ranking.getRanking().size());
+    assertEquals(0, ranking.getErrors().size());
+  }
+
+  /**
+   * Test to verify that a city still running past its own deadline fails with 504 while the other cities of the batch are returned.
+   */
+  @Test
+  @DisplayName("Should fail only the city exceeding its own fetch timeout with 504")
+  public void rankDaylight_oneCityTooSlow_onlyThatCityTimesOut() {
+    weatherService.fetchTimeoutMs = 200;
+    weatherService.batchParallelism = 1;
+
+    CityInfo london = new CityInfo();
+    london.setAddress("London");
+    london.setSunrise("07:00:00");
+    london.setSunset("17:00:00");
+
+    when(weatherRepository.getByCity("Oslo", false, QueryProfile.CURRENT)).thenAnswer(invocation -> {
+      Thread.sleep(1000);
+      return new CityInfo();
+    });
+    when(weatherRepository.getByCity("London", false, QueryProfile.CURRENT)).thenReturn(london);
+
+    DaylightRanking ranking = weatherService.rankDaylight(List.of("Oslo", "London"), null);
+
+    assertEquals(1, ranking.getRanking().size());
+    assertEquals(504, ranking.getErrors().get("Oslo").getStatus());
+  }
+
+  /**
+   * Test to verify that a number of top cities far above the number of cities ranks every city instead of sizing the heap from it.
+   */
+  @Test
+  @DisplayName("Should rank every city when top exceeds the number of cities")
+  public void rankDaylight_hugeTop_ranksEveryCity() {
+    CityInfo london = new CityInfo();
+    london.setAddress("London");
+    london.setSunrise("07:00:00");
+    london.setSunset("17:00:00");
+
+    CityInfo quito = new CityInfo();
+    quito.setAddress("Quito");
+    quito.setSunrise("06:00:00");
+    quito.setSunset("18:00:00");
+
+    when(weatherRepository.getByCity("London", false, QueryProfile.CURRENT)).thenReturn(london);
+    when(weatherRepository.getByCity("Quito", false, QueryProfile.CURRENT)).thenReturn(quito);
+
+    DaylightRanking ranking = weatherService.rankDaylight(List.of("London", "Quito"), Integer.MAX_VALUE);
+
+    assertEquals(2, ranking.getRanking().size());
+    assertEquals("Quito", ranking.getRanking().get(0).getAddress());
+    assertEquals("London", ranking.getRanking().get(1).getAddress());
+  }
+
+  /**
+   * Test to verify that the rankDaylight method rejects a non-positive number of top cities.
+   */
+  @Test
+  @DisplayName("Should throw IllegalArgumentException when top is not positive")
+  public void rankDaylight_invalidTop_throwsIllegalArgumentException() {
+    assertThrows(IllegalArgumentException.class, () -> weatherService.rankDaylight(List.of("London"), 0));
+  }
+
+  /**
+   * Test to verify that the rainStatus method maps each city to whether it is raining and reports cities with missing conditions.
+   */
+  @Test
+  @DisplayName("Should map each city to its rain status and report per-city errors")
+  public void rainStatus_mixedCities_returnsStatusAndErrors() {
+    CityInfo london = new CityInfo();
+    london.setConditions("type_21");
+
+    CityInfo cairo = new CityInfo();
+    cairo.setConditions("type_43");
+
+    CityInfo unknown = new CityInfo();
+    unknown.setConditions(null);
+
+    when(weatherRepository.getByCity("London", true, QueryProfile.CURRENT)).thenReturn(london);
+    when(weatherRepository.getByCity("Cairo", true, QueryProfile.CURRENT)).thenReturn(cairo);
+    when(weatherRepository.getByCity("Nowhere", true, QueryProfile.CURRENT)).thenReturn(unknown);
+
+    RainStatus status = weatherService.rainStatus(List.of("London", "Cairo", "Nowhere"));
+
+    assertEquals(true, status.getRaining().get("London"));
+    assertEquals(false, status.getRaining().get("Cairo"));
+    assertEquals(500, status.getErrors().get("Nowhere").getStatus());
+  }
+
+  /**
+   * Counts down the latch and waits until it reaches zero, failing the fetch if the sibling never starts.
+   */
+  private static CityInfo awaitSibling(CountDownLatch latch, CityInfo result) throws InterruptedException {
+    latch.countDown();
+
+    if (!latch.await(2, TimeUnit.SECONDS)) {
+      throw new IllegalStateException("Sibling fetch did not run in parallel");
+    }
+
+    return result;
+  }
+}